@@ -0,0 +1,387 @@
+package me.smecsia.smartfox.tools;
+
+import com.smartfoxserver.v2.entities.User;
+import com.smartfoxserver.v2.entities.data.ISFSObject;
+import com.smartfoxserver.v2.extensions.BaseClientRequestHandler;
+import com.smartfoxserver.v2.extensions.SFSExtension;
+import me.smecsia.smartfox.tools.annotations.Batch;
+import me.smecsia.smartfox.tools.annotations.HandlerPriority;
+import me.smecsia.smartfox.tools.common.BasicHandler;
+import me.smecsia.smartfox.tools.error.MetadataException;
+import me.smecsia.smartfox.tools.error.UnauthorizedException;
+import me.smecsia.smartfox.tools.service.AuthCallback;
+import me.smecsia.smartfox.tools.service.BasicAuthService;
+import me.smecsia.smartfox.tools.service.BasicAuthService.AuthStrategy;
+import me.smecsia.smartfox.tools.service.ConcurrencyLimiter;
+import me.smecsia.smartfox.tools.service.ConcurrencyLimiter.Permit;
+import me.smecsia.smartfox.tools.service.HandlerExecutors;
+import me.smecsia.smartfox.tools.service.HandlerExecutors.Dispatcher;
+import me.smecsia.smartfox.tools.service.RateLimiter;
+import me.smecsia.smartfox.tools.util.ClassRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static me.smecsia.smartfox.tools.util.ClassUtil.findAnnotationInClassHierarchy;
+
+/**
+ * Handler of the high-frequency requests (movement, input) which are accumulated and handled in bulk.
+ * The requests of all the instances of the handler class are collected into the shared batch (configured by
+ * the {@link Batch} annotation). The batch is flushed when it reaches the max size or when its window elapses,
+ * but it's never handled by the extension or the timer thread: the flush is submitted to the executor of the
+ * {@link me.smecsia.smartfox.tools.annotations.Offload} handler (the default executor otherwise).
+ * The batches of the handler class are handled one by one in the order of arrival, so the inputs of each user
+ * are never reordered. Each batch is admitted by the global {@link ConcurrencyLimiter} (the shed batches are
+ * passed to {@link #onShed(List)}), then the auth check (asynchronous if the service supports it) is performed
+ * once per distinct user of the batch and the authorized requests are passed to {@link #doHandleBatch(List)}.
+ * As the batch is handled by one (arbitrary) instance of the handler class, the handlers should not hold
+ * the per-request state.
+ *
+ * @author Ilya Sadykov
+ */
+public abstract class AbstractBatchRequestHandler extends BaseClientRequestHandler implements BasicHandler {
+
+    /**
+     * Request waiting in the batch
+     */
+    public static final class Request {
+        private final User user;
+        private final ISFSObject params;
+        private final long receivedAt;
+
+        Request(User user, ISFSObject params) {
+            this.user = user;
+            this.params = params;
+            this.receivedAt = System.nanoTime();
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        public ISFSObject getParams() {
+            return params;
+        }
+
+        /**
+         * @return {@link System#nanoTime()} when the request was received
+         */
+        public long getReceivedAt() {
+            return receivedAt;
+        }
+    }
+
+    /**
+     * Max count of the batches waiting for the flush, the excess requests are shed
+     */
+    public static final int MAX_PENDING_BATCHES = 16;
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "batch-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private static final ClassRegistry<Batcher> batchers = new ClassRegistry<Batcher>(false) {
+        @Override
+        protected Batcher computeValue(Class<?> handlerClass) {
+            Batch batch = findAnnotationInClassHierarchy(handlerClass, Batch.class);
+            if (batch == null) {
+                batch = Default.class.getAnnotation(Batch.class);
+            }
+            if (batch.window() <= 0 || batch.maxSize() <= 0) {
+                throw new MetadataException("Batch window and size of the handler " + handlerClass.getName()
+                        + " must be positive!");
+            }
+            return new Batcher(batch.window(), batch.maxSize());
+        }
+    };
+
+    protected Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final AuthStrategy authStrategy = BasicAuthService.getAuthStrategy(getClass());
+
+    private final Dispatcher dispatcher = HandlerExecutors.getDispatcher(getClass());
+
+    private final RateLimiter rateLimiter = RateLimiter.get(getClass());
+
+    private final HandlerPriority.Level priority = ConcurrencyLimiter.getPriority(getClass());
+
+    private final Batcher batcher = batchers.get(getClass());
+
+    protected AbstractBatchRequestHandler() {
+        super();
+    }
+
+    @Override
+    public SFSExtension getParentExtension() {
+        return super.getParentExtension();
+    }
+
+    /**
+     * Handles the batch of the authorized requests
+     *
+     * @param requests requests in the order of their arrival
+     */
+    public abstract void doHandleBatch(List<Request> requests);
+
+    /**
+     * Called instead of {@link #doHandleBatch(List)} when the requests are shed by the global
+     * {@link ConcurrencyLimiter} or when too many batches are waiting for the flush.
+     * Override to send the cheap rejection responses.
+     */
+    protected void onShed(List<Request> requests) {
+        logger.debug("Batch of " + requests.size() + " requests shed under the overload");
+    }
+
+    @Override
+    public final void handleClientRequest(final User user, final ISFSObject isfsObject) {
+        if (rateLimiter != null && !rateLimiter.tryAcquire(user, new Runnable() {
+            @Override
+            public void run() {
+                batcher.add(AbstractBatchRequestHandler.this, new Request(user, isfsObject));
+            }
+        })) {
+            return;
+        }
+        batcher.add(this, new Request(user, isfsObject));
+    }
+
+    /**
+     * Starts the flush of all the requests collected so far (e.g. before the extension is destroyed)
+     */
+    public void flush() {
+        batcher.drain(this);
+    }
+
+    private void submit(Runnable task) throws RejectedExecutionException {
+        if (dispatcher != null) {
+            dispatcher.submit(task);
+        } else {
+            HandlerExecutors.getExecutor(HandlerExecutors.DEFAULT).execute(task);
+        }
+    }
+
+    /**
+     * Admits, authorizes and handles the batch, then runs the continuation (in the thread completing the auth)
+     */
+    private void process(List<Request> batch, Runnable next) {
+        Permit permit = ConcurrencyLimiter.admit(priority);
+        if (permit == null) {
+            try {
+                onShed(batch);
+            } finally {
+                next.run();
+            }
+            return;
+        }
+        new BatchAuth(batch, permit, next).start();
+    }
+
+    /**
+     * Checks the distinct users of the batch and handles the batch when all the checks are completed
+     */
+    private final class BatchAuth implements AuthCallback {
+        private final List<Request> batch;
+        private final Permit permit;
+        private final Runnable next;
+        private final Set<User> denied = Collections.synchronizedSet(new HashSet<User>());
+        private final AtomicInteger remaining = new AtomicInteger();
+
+        BatchAuth(List<Request> batch, Permit permit, Runnable next) {
+            this.batch = batch;
+            this.permit = permit;
+            this.next = next;
+        }
+
+        void start() {
+            Set<User> users = new LinkedHashSet<User>();
+            for (Request request : batch) {
+                users.add(request.user);
+            }
+            // the extra count is held until all the checks are started
+            remaining.set(users.size() + 1);
+            for (User user : users) {
+                authStrategy.checkAsync(user, this);
+            }
+            done();
+        }
+
+        @Override
+        public void authorized(User user) {
+            done();
+        }
+
+        @Override
+        public void unauthorized(User user, UnauthorizedException error) {
+            logger.error("User unauthorized: " + error.getMessage());
+            denied.add(user);
+            done();
+        }
+
+        private void done() {
+            if (remaining.decrementAndGet() == 0) {
+                try {
+                    handle();
+                } finally {
+                    next.run();
+                }
+            }
+        }
+
+        private void handle() {
+            List<Request> accepted = new ArrayList<Request>(batch.size());
+            for (Request request : batch) {
+                if (!denied.contains(request.user)) {
+                    accepted.add(request);
+                }
+            }
+            if (accepted.isEmpty()) {
+                permit.release();
+                return;
+            }
+            try {
+                doHandleBatch(accepted);
+            } catch (UnauthorizedException ua) {
+                logger.error("User unauthorized: " + ua.getMessage());
+            } catch (RuntimeException e) {
+                logger.error("Failed to handle the batch: " + e.getMessage(), e);
+            } finally {
+                permit.complete();
+            }
+        }
+    }
+
+    /**
+     * Holds the default batch settings
+     */
+    @Batch
+    private static final class Default {
+    }
+
+    /**
+     * Collects the requests of the handler class (lock-free) and flushes them by one batch at a time
+     */
+    private static final class Batcher {
+        private final long windowMillis;
+        private final int maxSize;
+        private final Queue<Request> queue = new ConcurrentLinkedQueue<Request>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        /**
+         * Set while the batch is submitted or handled, so the batches are never handled concurrently
+         */
+        private final AtomicBoolean flushing = new AtomicBoolean();
+
+        Batcher(long windowMillis, int maxSize) {
+            this.windowMillis = windowMillis;
+            this.maxSize = maxSize;
+        }
+
+        void add(final AbstractBatchRequestHandler handler, Request request) {
+            if (size.get() >= maxSize * MAX_PENDING_BATCHES) {
+                handler.onShed(Collections.singletonList(request));
+                return;
+            }
+            queue.offer(request);
+            if (size.incrementAndGet() >= maxSize) {
+                drain(handler);
+            } else {
+                schedule(handler);
+            }
+        }
+
+        private void schedule(final AbstractBatchRequestHandler handler) {
+            if (scheduled.compareAndSet(false, true)) {
+                timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        scheduled.set(false);
+                        drain(handler);
+                    }
+                }, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Starts the flush unless it's in progress (the running flush handles the new requests)
+         */
+        void drain(AbstractBatchRequestHandler handler) {
+            if (flushing.compareAndSet(false, true)) {
+                submit(handler);
+            }
+        }
+
+        private void submit(final AbstractBatchRequestHandler handler) {
+            try {
+                handler.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushNext(handler);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // keep the flushing flag, the order is preserved while the executor is saturated
+                timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        submit(handler);
+                    }
+                }, windowMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                flushing.set(false);
+                throw e;
+            }
+        }
+
+        private void flushNext(final AbstractBatchRequestHandler handler) {
+            List<Request> batch = new ArrayList<Request>(Math.min(maxSize, Math.max(size.get(), 1)));
+            Request request;
+            while (batch.size() < maxSize && (request = queue.poll()) != null) {
+                batch.add(request);
+                size.decrementAndGet();
+            }
+            if (batch.isEmpty()) {
+                release(handler);
+                return;
+            }
+            handler.process(batch, new Runnable() {
+                @Override
+                public void run() {
+                    if (size.get() > 0) {
+                        submit(handler);
+                    } else {
+                        release(handler);
+                    }
+                }
+            });
+        }
+
+        private void release(AbstractBatchRequestHandler handler) {
+            flushing.set(false);
+            if (!queue.isEmpty()) {
+                // the requests added while the flag was set are handled by the next flush
+                drain(handler);
+            }
+        }
+    }
+}
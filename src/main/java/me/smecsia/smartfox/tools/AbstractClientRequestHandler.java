@@ -4,12 +4,22 @@ import com.smartfoxserver.v2.entities.User;
 import com.smartfoxserver.v2.entities.data.ISFSObject;
 import com.smartfoxserver.v2.extensions.BaseClientRequestHandler;
 import com.smartfoxserver.v2.extensions.SFSExtension;
+import me.smecsia.smartfox.tools.annotations.HandlerPriority;
 import me.smecsia.smartfox.tools.common.BasicHandler;
 import me.smecsia.smartfox.tools.error.UnauthorizedException;
+import me.smecsia.smartfox.tools.service.AuthCallback;
 import me.smecsia.smartfox.tools.service.BasicAuthService;
+import me.smecsia.smartfox.tools.service.BasicAuthService.AuthStrategy;
+import me.smecsia.smartfox.tools.service.ConcurrencyLimiter;
+import me.smecsia.smartfox.tools.service.ConcurrencyLimiter.Permit;
+import me.smecsia.smartfox.tools.service.HandlerExecutors;
+import me.smecsia.smartfox.tools.service.HandlerExecutors.Dispatcher;
+import me.smecsia.smartfox.tools.service.RateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * @author Ilya Sadykov
  *         Date: 19.09.12
@@ -19,6 +29,14 @@ public abstract class AbstractClientRequestHandler extends BaseClientRequestHand
 
     protected Logger logger = LoggerFactory.getLogger(getClass());
 
+    private final AuthStrategy authStrategy = BasicAuthService.getAuthStrategy(getClass());
+
+    private final Dispatcher dispatcher = HandlerExecutors.getDispatcher(getClass());
+
+    private final RateLimiter rateLimiter = RateLimiter.get(getClass());
+
+    private final HandlerPriority.Level priority = ConcurrencyLimiter.getPriority(getClass());
+
     protected AbstractClientRequestHandler() {
         super();
     }
@@ -30,13 +48,116 @@ public abstract class AbstractClientRequestHandler extends BaseClientRequestHand
 
     public abstract void doHandle(User user, ISFSObject isfsObject);
 
+    /**
+     * Called instead of {@link #doHandle(User, ISFSObject)} when the request is shed by the global
+     * {@link ConcurrencyLimiter}. Override to send the cheap rejection response.
+     */
+    protected void onShed(User user, ISFSObject isfsObject) {
+        logger.debug("Request shed under the overload");
+    }
+
+    /**
+     * Handles the request. If the handler is secured by the {@link me.smecsia.smartfox.tools.service.AsyncAuthService}
+     * the extension thread is released immediately and {@link #doHandle(User, ISFSObject)} is called
+     * by the thread completing the auth check.
+     * Handlers annotated with {@link me.smecsia.smartfox.tools.annotations.Offload} are dispatched to their
+     * executor after the auth check (in the order of arrival per user or room if the lane is set).
+     * The rate limit of the {@link me.smecsia.smartfox.tools.annotations.RateLimit} handlers is checked first,
+     * then the request is admitted by the global {@link ConcurrencyLimiter} (if it's enabled).
+     */
     @Override
-    public final void handleClientRequest(User user, ISFSObject isfsObject) {
+    public final void handleClientRequest(final User user, final ISFSObject isfsObject) {
+        if (rateLimiter != null && !rateLimiter.tryAcquire(user, new Runnable() {
+            @Override
+            public void run() {
+                admit(user, isfsObject);
+            }
+        })) {
+            return;
+        }
+        admit(user, isfsObject);
+    }
+
+    private void admit(User user, ISFSObject isfsObject) {
+        Permit permit = ConcurrencyLimiter.admit(priority);
+        if (permit == null) {
+            onShed(user, isfsObject);
+            return;
+        }
+        handle(user, isfsObject, permit);
+    }
+
+    private void handle(User user, final ISFSObject isfsObject, final Permit permit) {
+        if (authStrategy.isAsync()) {
+            authStrategy.checkAsync(user, new AuthCallback() {
+                @Override
+                public void authorized(User user) {
+                    proceed(user, isfsObject, permit);
+                }
+
+                @Override
+                public void unauthorized(User user, UnauthorizedException error) {
+                    permit.release();
+                    logger.error("User unauthorized: " + error.getMessage());
+                }
+            });
+            return;
+        }
+        try {
+            authStrategy.check(user);
+        } catch (UnauthorizedException ua) {
+            permit.release();
+            logger.error("User unauthorized: " + ua.getMessage());
+            return;
+        }
+        if (dispatcher != null) {
+            proceed(user, isfsObject, permit);
+            return;
+        }
         try {
-            BasicAuthService.checkAuthIfRequired(this, user);
             doHandle(user, isfsObject);
         } catch (UnauthorizedException ua) {
             logger.error("User unauthorized: " + ua.getMessage());
+        } finally {
+            permit.complete();
+        }
+    }
+
+    private void proceed(final User user, final ISFSObject isfsObject, final Permit permit) {
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    doHandle(user, isfsObject);
+                } catch (UnauthorizedException ua) {
+                    logger.error("User unauthorized: " + ua.getMessage());
+                } catch (RuntimeException e) {
+                    logger.error("Failed to handle the request: " + e.getMessage(), e);
+                } finally {
+                    permit.complete();
+                }
+            }
+        };
+        if (dispatcher == null) {
+            task.run();
+            return;
+        }
+        try {
+            dispatcher.dispatch(laneKey(user), task);
+        } catch (RejectedExecutionException e) {
+            permit.release();
+            logger.error("Request rejected: " + e.getMessage());
+        }
+    }
+
+    private Object laneKey(User user) {
+        switch (dispatcher.getLane()) {
+            case USER:
+                return user;
+            case ROOM:
+                return (user != null) ? user.getLastJoinedRoom() : null;
+            default:
+                return null;
         }
     }
 }
@@ -6,12 +6,18 @@ import com.smartfoxserver.v2.entities.User;
 import com.smartfoxserver.v2.exceptions.SFSException;
 import com.smartfoxserver.v2.extensions.BaseServerEventHandler;
 import com.smartfoxserver.v2.extensions.SFSExtension;
+import me.smecsia.smartfox.tools.annotations.Offload;
 import me.smecsia.smartfox.tools.common.BasicHandler;
 import me.smecsia.smartfox.tools.error.UnauthorizedException;
 import me.smecsia.smartfox.tools.service.BasicAuthService;
+import me.smecsia.smartfox.tools.service.BasicAuthService.AuthStrategy;
+import me.smecsia.smartfox.tools.service.HandlerExecutors;
+import me.smecsia.smartfox.tools.service.HandlerExecutors.Dispatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  *
  * @author Ilya Sadykov
@@ -22,6 +28,10 @@ public abstract class AbstractServerEventHandler extends BaseServerEventHandler
 
     protected Logger logger = LoggerFactory.getLogger(getClass());
 
+    private final AuthStrategy authStrategy = BasicAuthService.getAuthStrategy(getClass());
+
+    private final Dispatcher dispatcher = HandlerExecutors.getDispatcher(getClass());
+
     public AbstractServerEventHandler() {
         super();
     }
@@ -31,13 +41,52 @@ public abstract class AbstractServerEventHandler extends BaseServerEventHandler
         return super.getParentExtension();
     }
 
+    /**
+     * Handles the event. Handlers annotated with {@link Offload} are dispatched to their executor
+     * after the auth check (in the order of arrival per user or room if the lane is set).
+     */
     @Override
-    public final void handleServerEvent(ISFSEvent isfsEvent) throws SFSException {
+    public final void handleServerEvent(final ISFSEvent isfsEvent) throws SFSException {
         try {
-            BasicAuthService.checkAuthIfRequired(this, (User) isfsEvent.getParameter(SFSEventParam.USER));
-            doHandle(isfsEvent);
+            authStrategy.check((User) isfsEvent.getParameter(SFSEventParam.USER));
         } catch (UnauthorizedException ua) {
             logger.error("User unauthorized: " + ua.getMessage());
+            return;
+        }
+        if (dispatcher == null) {
+            try {
+                doHandle(isfsEvent);
+            } catch (UnauthorizedException ua) {
+                logger.error("User unauthorized: " + ua.getMessage());
+            }
+            return;
+        }
+        try {
+            dispatcher.dispatch(laneKey(isfsEvent), new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        doHandle(isfsEvent);
+                    } catch (UnauthorizedException ua) {
+                        logger.error("User unauthorized: " + ua.getMessage());
+                    } catch (Exception e) {
+                        logger.error("Failed to handle the event " + isfsEvent.getType() + ": " + e.getMessage(), e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.error("Event " + isfsEvent.getType() + " rejected: " + e.getMessage());
+        }
+    }
+
+    private Object laneKey(ISFSEvent isfsEvent) {
+        switch (dispatcher.getLane()) {
+            case USER:
+                return isfsEvent.getParameter(SFSEventParam.USER);
+            case ROOM:
+                return isfsEvent.getParameter(SFSEventParam.ROOM);
+            default:
+                return null;
         }
     }
 
@@ -0,0 +1,146 @@
+package me.smecsia.smartfox.tools;
+
+import com.smartfoxserver.v2.entities.User;
+import com.smartfoxserver.v2.entities.data.ISFSObject;
+import me.smecsia.common.serialize.TransportObject;
+import me.smecsia.smartfox.tools.error.MetadataException;
+import me.smecsia.smartfox.tools.serialize.SFSSerializer.Binding;
+import me.smecsia.smartfox.tools.util.ClassRegistry;
+import me.smecsia.smartfox.tools.util.SFSObjectUtil;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static me.smecsia.smartfox.tools.util.ClassUtil.getSuperclassTypeArguments;
+
+/**
+ * Request handler working with the typed request and response objects. The request and response classes are
+ * resolved from the generic parameters of the handler class once, the request is deserialized before
+ * {@link #doHandle(User, TransportObject)} and the returned response is serialized by the response binding
+ * and sent back to the user with the {@link #getResponseCommand()}.
+ * If the request instances are reused (see {@link #AbstractTypedRequestHandler(boolean)}), each thread
+ * deserializes the requests into its own instance reset to the defaults, so the request must not be used
+ * after {@link #doHandle(User, TransportObject)} returns. The reused instances are held softly and
+ * do not prevent the unloading of the extension classes.
+ *
+ * @author Ilya Sadykov
+ */
+public abstract class AbstractTypedRequestHandler<Req extends TransportObject, Resp extends TransportObject>
+        extends AbstractClientRequestHandler {
+
+    /**
+     * Bindings of the request and response classes of the handler class
+     */
+    private static final class HandlerBindings {
+        final Binding<TransportObject> request;
+        final Binding<TransportObject> response;
+
+        HandlerBindings(Binding<TransportObject> request, Binding<TransportObject> response) {
+            this.request = request;
+            this.response = response;
+        }
+    }
+
+    private static final ClassRegistry<HandlerBindings> bindings = new ClassRegistry<HandlerBindings>(true) {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected HandlerBindings computeValue(Class<?> handlerClass) {
+            Class<?>[] arguments = getSuperclassTypeArguments(handlerClass, AbstractTypedRequestHandler.class);
+            if (arguments == null || arguments[0] == null) {
+                throw new MetadataException("Cannot resolve the request class of the handler "
+                        + handlerClass.getName() + ": it must be declared by the generic parameters!");
+            }
+            // responses of the abstract types are serialized by their actual classes
+            Class<?> responseClass = arguments[1];
+            boolean concreteResponse = responseClass != null && !responseClass.isInterface()
+                    && !Modifier.isAbstract(responseClass.getModifiers());
+            return new HandlerBindings(SFSObjectUtil.bind((Class<TransportObject>) arguments[0]),
+                    concreteResponse ? SFSObjectUtil.bind((Class<TransportObject>) responseClass) : null);
+        }
+    };
+
+    /**
+     * Reusable request instances of the current thread by the request class
+     */
+    private static final ThreadLocal<Map<Class<?>, SoftReference<TransportObject>>> reusedRequests =
+            new ThreadLocal<Map<Class<?>, SoftReference<TransportObject>>>() {
+                @Override
+                protected Map<Class<?>, SoftReference<TransportObject>> initialValue() {
+                    return new WeakHashMap<Class<?>, SoftReference<TransportObject>>();
+                }
+            };
+
+    private final HandlerBindings handlerBindings = bindings.get(getClass());
+    private final boolean reuseRequests;
+
+    protected AbstractTypedRequestHandler() {
+        this(false);
+    }
+
+    /**
+     * @param reuseRequests true if the request instances should be reused by each thread
+     *                      (ignored for the immutable requests)
+     */
+    protected AbstractTypedRequestHandler(boolean reuseRequests) {
+        super();
+        this.reuseRequests = reuseRequests && handlerBindings.request.isReusable();
+    }
+
+    /**
+     * Handles the request
+     *
+     * @param user    user sent the request
+     * @param request deserialized request
+     * @return response to be sent to the user or null
+     */
+    public abstract Resp doHandle(User user, Req request);
+
+    /**
+     * @return command of the response (must be defined if the handler returns the responses)
+     */
+    protected String getResponseCommand() {
+        return null;
+    }
+
+    /**
+     * @return class of the request
+     */
+    @SuppressWarnings("unchecked")
+    public Class<Req> getRequestClass() {
+        return (Class<Req>) handlerBindings.request.getType();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final void doHandle(User user, ISFSObject isfsObject) {
+        final Binding<TransportObject> binding = handlerBindings.request;
+        Resp response;
+        if (reuseRequests) {
+            // the instance is taken out while in use, so the nested handling of the same request class
+            // on this thread gets its own instance
+            final Map<Class<?>, SoftReference<TransportObject>> reused = reusedRequests.get();
+            final SoftReference<TransportObject> ref = reused.remove(binding.getType());
+            TransportObject instance = (ref != null) ? ref.get() : null;
+            instance = (instance != null) ? binding.reset(instance) : binding.newInstance();
+            try {
+                response = doHandle(user, (Req) binding.deserialize(instance, isfsObject));
+            } finally {
+                reused.put(binding.getType(), (ref != null && ref.get() == instance) ? ref
+                        : new SoftReference<TransportObject>(instance));
+            }
+        } else {
+            response = doHandle(user, (Req) binding.deserialize(isfsObject));
+        }
+        if (response != null) {
+            String command = getResponseCommand();
+            if (command == null) {
+                logger.error("Response of " + getClass().getName() + " is not sent: response command is not defined");
+                return;
+            }
+            send(command, (handlerBindings.response != null) ? handlerBindings.response.serialize(response)
+                    : SFSObjectUtil.serialize(response), user);
+        }
+    }
+}
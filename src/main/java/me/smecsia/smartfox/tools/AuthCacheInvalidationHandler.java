@@ -0,0 +1,28 @@
+package me.smecsia.smartfox.tools;
+
+import com.smartfoxserver.v2.core.ISFSEvent;
+import com.smartfoxserver.v2.core.SFSEventParam;
+import com.smartfoxserver.v2.entities.User;
+import com.smartfoxserver.v2.exceptions.SFSException;
+import me.smecsia.smartfox.tools.service.BasicAuthService;
+
+/**
+ * Drops the cached auth decisions of the user. Should be registered for the USER_LOGOUT and USER_DISCONNECT events
+ * when the handlers use the {@link me.smecsia.smartfox.tools.annotations.Security#cacheTtl()}:
+ * <pre>
+ *     addEventHandler(SFSEventType.USER_LOGOUT, AuthCacheInvalidationHandler.class);
+ *     addEventHandler(SFSEventType.USER_DISCONNECT, AuthCacheInvalidationHandler.class);
+ * </pre>
+ *
+ * @author Ilya Sadykov
+ */
+public class AuthCacheInvalidationHandler extends AbstractServerEventHandler {
+
+    @Override
+    public void doHandle(ISFSEvent isfsEvent) throws SFSException {
+        User user = (User) isfsEvent.getParameter(SFSEventParam.USER);
+        if (user != null) {
+            BasicAuthService.invalidate(user);
+        }
+    }
+}
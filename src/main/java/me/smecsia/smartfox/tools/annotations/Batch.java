@@ -0,0 +1,28 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Settings of the batching of the requests for the
+ * {@link me.smecsia.smartfox.tools.AbstractBatchRequestHandler}: the batch is handled when it reaches
+ * the max size or when the window since its first request elapses.
+ *
+ * @author Ilya Sadykov
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Batch {
+
+    /**
+     * Max time (in milliseconds) the request waits for the batch to fill up
+     */
+    public long window() default 10;
+
+    /**
+     * Max count of the requests in the batch
+     */
+    public int maxSize() default 64;
+}
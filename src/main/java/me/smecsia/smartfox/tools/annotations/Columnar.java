@@ -0,0 +1,24 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Enables the columnar encoding of the collection of entities: instead of the array of objects the field is
+ * written as the SFSObject with the count of items ("n"), the bitmap of the null items ("x", if any),
+ * one typed array per scalar field of the non-null items ("c"), the null bitmaps of the columns containing
+ * nulls ("z") and the dictionaries of the string and enum columns ("d"). The columns honour {@link Compact}
+ * (the narrowest integral type fitting the whole column) and {@link CompactEnum} (stable ordinals instead
+ * of the dictionary). Non-scalar fields of the items are written as the array of objects ("r").
+ * Items must have the default constructor and no {@link SerializeCreator}, which is checked when the metadata
+ * is built. The collection containing the subclasses of the declared item type is written with the plain
+ * encoding. Deserialization accepts both columnar and plain encodings.
+ *
+ * @author Ilya Sadykov
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Columnar {
+}
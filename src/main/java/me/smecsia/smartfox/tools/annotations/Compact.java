@@ -0,0 +1,20 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Enables the compact serialization of the field (or of all the fields of the annotated class):
+ * the values equal to the declared defaults (the values of the instance created by the default constructor)
+ * are omitted and the integral values are written as BYTE/SHORT/INT when they fit.
+ * Deserialization widens the numbers back, but the omitted fields are not updated, so the compact objects
+ * should be deserialized into the new instances.
+ *
+ * @author Ilya Sadykov
+ */
+@Target({ElementType.FIELD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Compact {
+}
@@ -0,0 +1,19 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the enum field (or all the enum fields of the annotated class) should be serialized compactly:
+ * enums are written as BYTE/SHORT ordinals (see {@link EnumOrdinal}), sets of enums are written as LONG/LONG_ARRAY
+ * bitmasks and deserialized into EnumSet, other collections of enums are written as BYTE_ARRAY/SHORT_ARRAY of ordinals.
+ * Deserialization accepts both compact and string encodings.
+ *
+ * @author Ilya Sadykov
+ */
+@Target({ElementType.FIELD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CompactEnum {
+}
@@ -0,0 +1,21 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the alternative names of the enum constant recognized by {@link me.smecsia.smartfox.tools.util.EnumUtil#fromAlias}
+ *
+ * @author Ilya Sadykov
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EnumAlias {
+
+    /**
+     * Alternative names of the constant
+     */
+    public String[] value();
+}
@@ -0,0 +1,23 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the stable ordinal of the enum constant used for the compact enums encoding (see {@link CompactEnum}).
+ * If any constant of the enum is annotated, all of them must be annotated with the unique ordinals.
+ * Otherwise the declaration order of the constants is used.
+ *
+ * @author Ilya Sadykov
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EnumOrdinal {
+
+    /**
+     * Ordinal of the constant (0..32767)
+     */
+    public int value();
+}
@@ -0,0 +1,49 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Priority of the client request handler under the overload: when the global concurrency limit
+ * (see {@link me.smecsia.smartfox.tools.service.ConcurrencyLimiter}) is approached, the requests of the lower
+ * priority handlers are shed first. Handlers are {@link Level#NORMAL} by default.
+ *
+ * @author Ilya Sadykov
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface HandlerPriority {
+
+    public static enum Level {
+        /**
+         * Never shed (e.g. login, purchases)
+         */
+        CRITICAL(Double.POSITIVE_INFINITY),
+        /**
+         * Admitted up to the full limit
+         */
+        HIGH(1.0),
+        NORMAL(0.8),
+        /**
+         * Shed first (e.g. chat, cosmetic updates)
+         */
+        LOW(0.5);
+
+        private final double share;
+
+        Level(double share) {
+            this.share = share;
+        }
+
+        /**
+         * @return part of the concurrency limit available to the requests of this priority
+         */
+        public double getShare() {
+            return share;
+        }
+    }
+
+    public Level value();
+}
@@ -0,0 +1,72 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import me.smecsia.smartfox.tools.service.HandlerExecutors;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Moves the execution of the client request handler from the extension threads to the executor registered
+ * in the {@link HandlerExecutors}. The auth check is performed before the dispatch.
+ *
+ * @author Ilya Sadykov
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Offload {
+
+    /**
+     * What to do when the executor is saturated
+     */
+    public static enum Rejection {
+        /**
+         * Drop the request
+         */
+        REJECT,
+        /**
+         * Handle the request in the extension thread (slowing down the intake of the new requests)
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * Key of the ordered execution
+     */
+    public static enum Lane {
+        /**
+         * No ordering
+         */
+        NONE,
+        /**
+         * Requests/events of the same user are handled one by one in the order of their arrival
+         */
+        USER,
+        /**
+         * Requests/events of the same room (the last joined room of the user for the requests)
+         * are handled one by one in the order of their arrival
+         */
+        ROOM
+    }
+
+    /**
+     * Name of the executor (the default one is a virtual-thread executor if the JVM supports them,
+     * a bounded pool otherwise)
+     */
+    public String executor() default HandlerExecutors.DEFAULT;
+
+    /**
+     * Time (in milliseconds) after which the handling thread is interrupted (0 means no timeout)
+     */
+    public long timeout() default 0;
+
+    /**
+     * Ordering of the handling. Ordered lanes are shared by all the handlers of the same executor and are bounded,
+     * the requests exceeding their capacity are dropped regardless of the {@link #onRejected()}
+     * (running them in the extension thread would break the order)
+     */
+    public Lane lane() default Lane.NONE;
+
+    public Rejection onRejected() default Rejection.REJECT;
+}
@@ -0,0 +1,54 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limits the rate of the requests of each user to the client request handler.
+ * The limit is checked before the auth check and the handling of the request.
+ *
+ * @author Ilya Sadykov
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimit {
+
+    /**
+     * What to do with the requests over the limit
+     */
+    public static enum Action {
+        /**
+         * Skip the request logging the warning
+         */
+        REJECT,
+        /**
+         * Skip the request silently
+         */
+        DROP,
+        /**
+         * Handle the request later, when the rate allows it (the requests which should wait longer than
+         * {@link RateLimit#maxDelay()} are dropped). Delayed requests are handled by the shared timer thread,
+         * so the handlers should also be offloaded (see {@link Offload}) unless they are fast
+         */
+        DELAY
+    }
+
+    /**
+     * Sustained count of the requests per second
+     */
+    public double perSecond();
+
+    /**
+     * Count of the requests which may arrive at once (by default equal to the rate per second)
+     */
+    public int burst() default 0;
+
+    public Action action() default Action.REJECT;
+
+    /**
+     * Max time (in milliseconds) to delay the request for the {@link Action#DELAY} action
+     */
+    public long maxDelay() default 1000;
+}
@@ -28,4 +28,23 @@ public @interface Security {
      */
     public Class<? extends BasicAuthService> authService() default BasicAuthService.class;
 
+    /**
+     * Permissions required by this handler (checked in addition to the auth service).
+     * Granted permissions are provided by the {@link me.smecsia.smartfox.tools.service.PermissionLoader}
+     */
+    public String[] permissions() default {};
+
+    /**
+     * Time (in milliseconds) to cache the decisions of the auth service per user (0 disables caching).
+     * Both positive and negative decisions are cached. Cached decisions are dropped on logout/disconnect
+     * (see {@link me.smecsia.smartfox.tools.AuthCacheInvalidationHandler}) or by
+     * {@link BasicAuthService#invalidate(com.smartfoxserver.v2.entities.User)}
+     */
+    public long cacheTtl() default 0;
+
+    /**
+     * Max count of the users whose decisions are cached
+     */
+    public int cacheSize() default 10000;
+
 }
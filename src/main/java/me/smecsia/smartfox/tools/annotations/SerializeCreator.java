@@ -0,0 +1,19 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the constructor or the static factory method used by the serializer to create the deserialized instance.
+ * Each parameter must be annotated with {@link SerializeParam} naming the serialized field it receives.
+ * It allows to deserialize the immutable objects (with the final fields and without the setters).
+ * The objects of such classes are considered immutable: they are never updated by the serializer after creation.
+ *
+ * @author Ilya Sadykov
+ */
+@Target({ElementType.CONSTRUCTOR, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SerializeCreator {
+}
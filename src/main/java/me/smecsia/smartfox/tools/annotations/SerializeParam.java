@@ -0,0 +1,21 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds the parameter of the {@link SerializeCreator} to the serialized field
+ *
+ * @author Ilya Sadykov
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SerializeParam {
+
+    /**
+     * Serialized name of the field
+     */
+    public String value();
+}
@@ -0,0 +1,31 @@
+package me.smecsia.smartfox.tools.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Includes the field into the listed serialization views (audiences), e.g. <code>@SerializeView({"owner", "team"})</code>.
+ * Views are opt-in: once a class annotates any of its fields, its fields without this annotation are excluded from
+ * every view, so a newly added field is not exposed until it's assigned to the views. Use {@link #ALL} for the fields
+ * of every view. Classes without the annotated fields are serialized entirely. The view is applied to the nested
+ * entities too. See {@link me.smecsia.smartfox.tools.serialize.SFSSerializer#serializeView(
+ * me.smecsia.common.serialize.TransportObject, String)}.
+ *
+ * @author Ilya Sadykov
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SerializeView {
+
+    /**
+     * Name matching any view
+     */
+    String ALL = "*";
+
+    /**
+     * Names of the views which include the field
+     */
+    public String[] value();
+}
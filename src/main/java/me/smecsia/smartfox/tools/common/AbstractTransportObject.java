@@ -2,6 +2,7 @@ package me.smecsia.smartfox.tools.common;
 
 import com.smartfoxserver.v2.entities.data.ISFSObject;
 import me.smecsia.common.serialize.TransportObject;
+import me.smecsia.smartfox.tools.serialize.FieldSet;
 
 import static me.smecsia.smartfox.tools.util.SFSObjectUtil.deserialize;
 import static me.smecsia.smartfox.tools.util.SFSObjectUtil.serialize;
@@ -18,6 +19,10 @@ public abstract class AbstractTransportObject implements TransportObject {
         return serialize(this);
     }
 
+    public ISFSObject toSFSObject(FieldSet fieldSet) {
+        return serialize(this, fieldSet);
+    }
+
     public void updateFromSFSObject(ISFSObject obj) {
         deserialize(this, obj);
     }
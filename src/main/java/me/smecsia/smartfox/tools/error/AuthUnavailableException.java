@@ -0,0 +1,20 @@
+package me.smecsia.smartfox.tools.error;
+
+/**
+ * Signals that the auth check could not be completed (timed out, overloaded or interrupted),
+ * so it's not the decision of the auth service and must not be cached.
+ *
+ * @author Ilya Sadykov
+ */
+public class AuthUnavailableException extends UnauthorizedException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AuthUnavailableException(String s) {
+        super(s);
+    }
+
+    public AuthUnavailableException(Throwable throwable) {
+        super(throwable);
+    }
+}
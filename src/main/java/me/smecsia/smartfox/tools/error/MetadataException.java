@@ -6,6 +6,9 @@ package me.smecsia.smartfox.tools.error;
  *         Time: 18:55
  */
 public class MetadataException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
     public MetadataException(Throwable t) {
         super(t);
     }
@@ -6,6 +6,9 @@ package me.smecsia.smartfox.tools.error;
  *         Time: 13:29
  */
 public class UnauthorizedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
     public UnauthorizedException(String s) {
         super(s);
     }
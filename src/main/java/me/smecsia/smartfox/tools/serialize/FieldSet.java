@@ -0,0 +1,187 @@
+package me.smecsia.smartfox.tools.serialize;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable set of the field paths that should be processed during the (de)serialization.
+ * Paths may point to the nested entities' fields using dot notation, e.g. "subEntities.longField".
+ * Selecting an entity field without the nested path means the whole nested entity.
+ * Field sets are compiled against the class metadata once, so it's better to keep them as constants:
+ * <pre>
+ *     private static final FieldSet SHORT_INFO = FieldSet.of("name", "subEntities.longField");
+ *     // ...
+ *     serializer.serialize(entity, SHORT_INFO);
+ * </pre>
+ * The field set may also be a named view (see {@link #view(String)}), which selects the fields by their
+ * {@link me.smecsia.smartfox.tools.annotations.SerializeView} annotations at any nesting level.
+ *
+ * @author Ilya Sadykov
+ */
+public final class FieldSet {
+
+    private static final ConcurrentMap<String, FieldSet> views = new ConcurrentHashMap<String, FieldSet>();
+
+    private final Set<String> fields;
+    private final Map<String, FieldSet> nested;
+    private final String view;
+    private final int hash;
+
+    private FieldSet(Set<String> fields, Map<String, FieldSet> nested, String view) {
+        this.fields = fields;
+        this.nested = nested;
+        this.view = view;
+        this.hash = 31 * (31 * fields.hashCode() + nested.hashCode()) + ((view != null) ? view.hashCode() : 0);
+    }
+
+    /**
+     * Returns the field set of the named view. The instance is shared, so its plans are compiled once per class.
+     *
+     * @param name view name
+     * @return view field set
+     */
+    public static FieldSet view(String name) {
+        FieldSet fieldSet = views.get(name);
+        if (fieldSet == null) {
+            fieldSet = new FieldSet(Collections.<String>emptySet(), Collections.<String, FieldSet>emptyMap(), name);
+            FieldSet existing = views.putIfAbsent(name, fieldSet);
+            if (existing != null) {
+                fieldSet = existing;
+            }
+        }
+        return fieldSet;
+    }
+
+    /**
+     * Creates the field set from the list of the field paths
+     *
+     * @param paths field paths (dot separated for the nested entities)
+     * @return compiled field set
+     */
+    public static FieldSet of(String... paths) {
+        return of(Arrays.asList(paths));
+    }
+
+    /**
+     * Creates the field set from the collection of the field paths
+     *
+     * @param paths field paths (dot separated for the nested entities)
+     * @return compiled field set
+     */
+    public static FieldSet of(Collection<String> paths) {
+        Set<String> fields = new HashSet<String>();
+        Set<String> wholeFields = new HashSet<String>();
+        Map<String, List<String>> nestedPaths = new HashMap<String, List<String>>();
+        for (String path : paths) {
+            if (path == null || path.length() == 0) {
+                throw new IllegalArgumentException("Field path must not be empty!");
+            }
+            int dot = path.indexOf('.');
+            if (dot < 0) {
+                fields.add(path);
+                wholeFields.add(path);
+            } else {
+                String name = path.substring(0, dot);
+                fields.add(name);
+                if (!nestedPaths.containsKey(name)) {
+                    nestedPaths.put(name, new ArrayList<String>());
+                }
+                nestedPaths.get(name).add(path.substring(dot + 1));
+            }
+        }
+        Map<String, FieldSet> nested = new HashMap<String, FieldSet>();
+        for (Map.Entry<String, List<String>> entry : nestedPaths.entrySet()) {
+            if (!wholeFields.contains(entry.getKey())) {
+                nested.put(entry.getKey(), of(entry.getValue()));
+            }
+        }
+        return new FieldSet(Collections.unmodifiableSet(fields), Collections.unmodifiableMap(nested), null);
+    }
+
+    /**
+     * Checks if the field with the given name is selected
+     *
+     * @param name field name
+     * @return true if the field is a part of this set
+     */
+    public boolean contains(String name) {
+        return fields.contains(name);
+    }
+
+    /**
+     * Returns the projection for the nested entity field
+     *
+     * @param name field name
+     * @return nested field set or null if the whole nested entity is selected
+     */
+    public FieldSet getNested(String name) {
+        return nested.get(name);
+    }
+
+    /**
+     * @return top level field names of this set
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the subset of this field set containing only the given top level fields
+     *
+     * @param names top level field names
+     * @return restricted field set
+     */
+    FieldSet restrict(Collection<String> names) {
+        Set<String> restrictedFields = new HashSet<String>();
+        Map<String, FieldSet> restrictedNested = new HashMap<String, FieldSet>();
+        for (String name : names) {
+            if (view != null || fields.contains(name)) {
+                restrictedFields.add(name);
+                FieldSet nestedSet = (view != null) ? this : nested.get(name);
+                if (nestedSet != null) {
+                    restrictedNested.put(name, nestedSet);
+                }
+            }
+        }
+        return new FieldSet(Collections.unmodifiableSet(restrictedFields),
+                Collections.unmodifiableMap(restrictedNested), null);
+    }
+
+    /**
+     * @return name of the view or null if this set is not a view
+     */
+    public String getView() {
+        return view;
+    }
+
+    /**
+     * Field sets are equal if they select the same paths, so the plans compiled for one of them
+     * are reused by the equal ones
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FieldSet)) {
+            return false;
+        }
+        FieldSet other = (FieldSet) o;
+        return hash == other.hash && fields.equals(other.fields) && nested.equals(other.nested)
+                && ((view != null) ? view.equals(other.view) : other.view == null);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        if (view != null) {
+            return "FieldSet(view=" + view + ")";
+        }
+        return "FieldSet" + fields + ((nested.isEmpty()) ? "" : nested.toString());
+    }
+}
@@ -3,43 +3,72 @@ package me.smecsia.smartfox.tools.serialize;
 import com.smartfoxserver.v2.entities.data.*;
 import me.smecsia.common.serialize.*;
 import me.smecsia.common.serialize.annotations.*;
+import me.smecsia.smartfox.tools.annotations.Columnar;
+import me.smecsia.smartfox.tools.annotations.Compact;
+import me.smecsia.smartfox.tools.annotations.CompactEnum;
+import me.smecsia.smartfox.tools.annotations.SerializeCreator;
+import me.smecsia.smartfox.tools.annotations.SerializeParam;
+import me.smecsia.smartfox.tools.annotations.SerializeView;
 import me.smecsia.smartfox.tools.common.BasicService;
 import me.smecsia.smartfox.tools.error.MetadataException;
+import me.smecsia.smartfox.tools.util.ClassRegistry;
 import me.smecsia.smartfox.tools.util.EnumUtil;
 import org.apache.commons.lang.WordUtils;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static me.smecsia.smartfox.tools.util.ClassUtil.*;
+import static me.smecsia.smartfox.tools.util.EnumUtil.*;
 import static me.smecsia.smartfox.tools.util.SFSObjectUtil.*;
 import static me.smecsia.smartfox.tools.util.TypesUtil.*;
 import static org.apache.commons.lang.StringUtils.isEmpty;
 
 /**
+ * The field annotated with {@link MissingSerializeFieldsStorage} receives the unknown keys of the deserialized object.
+ * Its map is allocated only when some unknown keys are present, otherwise it's the shared immutable empty map,
+ * so the code adding the fields to be serialized must set its own map.
+ *
  * @author Ilya Sadykov
  */
 public class SFSSerializer extends BasicService implements TransportSerializer<ISFSObject> {
 
     public static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
 
+    /**
+     * Max count of the field sets which plans are cached per class (the plans of the others are compiled per call)
+     */
+    private static final int MAX_CACHED_PLANS = 256;
+
     private enum FieldType {
         LONG, INT, BOOL, FLOAT, DOUBLE, STRING, DATE,
         STRING_ARRAY, LONG_ARRAY, ENUM_ARRAY, ENTITY, ENTITY_ARRAY, ENUM, MAP,
-        CUSTOM, UNKNOWN
+        CODEC, GENERIC, CUSTOM, UNKNOWN
     }
 
-    private static final Map<Class<? extends TransportObject>, Metadata> metaCache =
-            new ConcurrentHashMap<Class<? extends TransportObject>, Metadata>();
+    /**
+     * Incremented on each invalidation of the metadata, so the bindings resolve it again
+     */
+    private static final AtomicInteger metadataGeneration = new AtomicInteger();
+
+    private static final ClassRegistry<Metadata<?>> metaCache = new ClassRegistry<Metadata<?>>(true) {
+        @Override
+        protected Metadata<?> computeValue(Class<?> type) {
+            return newMetadata(type);
+        }
+    };
     private final List<SerializePreProcessor> preProcessors = Collections.synchronizedList(new
             ArrayList<SerializePreProcessor>());
     private final List<SerializePostProcessor> postProcessors = Collections.synchronizedList(new
             ArrayList<SerializePostProcessor>());
 
-    private class FieldMeta {
+    private static class FieldMeta {
         Method getter;
         Method setter;
         FieldType fieldType;
@@ -54,12 +83,156 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
         Field field;
         final String name;
         Serialize config;
+        int index;
+        SFSDataType enumWireType;
+        TypeCodec<Object> codec;
+        ValueCodec valueCodec;
+        boolean creatorParam;
+        String[] views;
+        boolean compact;
+        Object defaultValue;
+        boolean columnar;
+
+        boolean inView(String view) {
+            if (views == null) {
+                return false;
+            }
+            for (String name : views) {
+                if (name.equals(view) || name.equals(SerializeView.ALL)) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
         private FieldMeta(String name) {
             this.name = name;
         }
     }
 
+    /**
+     * Precompiled projection of the class fields: bitmask of the selected fields indexes and
+     * the projections for the nested entities
+     */
+    private static class FieldPlan {
+        final long[] mask;
+        final FieldSet[] nested;
+
+        private FieldPlan(int fieldsCount) {
+            this.mask = new long[(fieldsCount + 63) >>> 6];
+            this.nested = new FieldSet[fieldsCount];
+        }
+
+        boolean includes(FieldMeta fieldMeta) {
+            return (mask[fieldMeta.index >>> 6] & (1L << fieldMeta.index)) != 0;
+        }
+
+        void include(FieldMeta fieldMeta) {
+            mask[fieldMeta.index >>> 6] |= (1L << fieldMeta.index);
+        }
+    }
+
+    /**
+     * Index of the custom (de)serialization methods by the name of the field they handle and of the public
+     * methods by their names. Built in one pass over the methods of the class hierarchy, so the metadata reading
+     * is linear. If several methods handle the same field, the first one (the closest to the class) is used.
+     */
+    private static class MethodIndex {
+        final Map<String, List<Method>> publicMethods = new HashMap<String, List<Method>>();
+        final Map<String, Method> fieldSerializers = new HashMap<String, Method>();
+        final Map<String, Method> fieldDeserializers = new HashMap<String, Method>();
+        final Map<String, Method> listItemSerializers = new HashMap<String, Method>();
+        final Map<String, Method> listItemDeserializers = new HashMap<String, Method>();
+        final Map<String, Method> listItemInitializers = new HashMap<String, Method>();
+
+        private MethodIndex(Method[] methods, Method[] publicMethods) {
+            for (Method m : publicMethods) {
+                List<Method> overloads = this.publicMethods.get(m.getName());
+                if (overloads == null) {
+                    overloads = new ArrayList<Method>(1);
+                    this.publicMethods.put(m.getName(), overloads);
+                }
+                overloads.add(m);
+            }
+            for (Method m : methods) {
+                for (Annotation annotation : m.getDeclaredAnnotations()) {
+                    if (annotation instanceof CustomFieldSerializer) {
+                        putFirst(fieldSerializers, ((CustomFieldSerializer) annotation).fieldName(), m);
+                    } else if (annotation instanceof CustomFieldDeserializer) {
+                        putFirst(fieldDeserializers, ((CustomFieldDeserializer) annotation).fieldName(), m);
+                    } else if (annotation instanceof CustomListItemSerializer) {
+                        putFirst(listItemSerializers, ((CustomListItemSerializer) annotation).listName(), m);
+                    } else if (annotation instanceof CustomListItemDeserializer) {
+                        putFirst(listItemDeserializers, ((CustomListItemDeserializer) annotation).listName(), m);
+                    } else if (annotation instanceof CustomListItemInitializer) {
+                        putFirst(listItemInitializers, ((CustomListItemInitializer) annotation).listName(), m);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Finds the public method by its signature (the alternative of Class.getMethod without the exceptions)
+         */
+        Method findPublic(String name, Class<?>... paramTypes) {
+            Method result = null;
+            List<Method> overloads = publicMethods.get(name);
+            if (overloads != null) {
+                for (Method m : overloads) {
+                    if (Arrays.equals(m.getParameterTypes(), paramTypes) && (result == null || result.isBridge())) {
+                        result = m;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static void putFirst(Map<String, Method> index, String fieldName, Method m) {
+            if (!index.containsKey(fieldName)) {
+                index.put(fieldName, m);
+            }
+        }
+    }
+
+    /**
+     * Columns of the columnar encoding: scalar fields written as the typed arrays and the projection
+     * of the rest fields written as the array of objects
+     */
+    private static class ColumnLayout {
+        final FieldMeta[] columns;
+        final FieldSet rest;
+
+        private ColumnLayout(FieldMeta[] columns, FieldSet rest) {
+            this.columns = columns;
+            this.rest = rest;
+        }
+    }
+
+    /**
+     * Cached creator of the immutable objects (constructor or static factory annotated with @SerializeCreator)
+     */
+    private static class Creator {
+        final Constructor<?> constructor;
+        final Method factory;
+        final FieldMeta[] params;
+        final Object[] defaults;
+
+        private Creator(Constructor<?> constructor, Method factory, FieldMeta[] params) {
+            this.constructor = constructor;
+            this.factory = factory;
+            this.params = params;
+            this.defaults = new Object[params.length];
+            Class<?>[] paramTypes = (constructor != null) ? constructor.getParameterTypes() : factory.getParameterTypes();
+            for (int i = 0; i < paramTypes.length; ++i) {
+                defaults[i] = defaultValue(paramTypes[i]);
+            }
+        }
+
+        Object newInstance(Object[] args) throws Exception {
+            return (constructor != null) ? constructor.newInstance(args) : factory.invoke(null, args);
+        }
+    }
+
     /**
      * Registers serialize processor
      *
@@ -108,53 +281,270 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
      *
      * @param <T>
      */
-    private class Metadata<T extends TransportObject> {
+    private static class Metadata<T extends TransportObject> extends BasicService {
         private Class<T> entityClass;
         private SerializeStrategy.Strategy serializeStrategy;
         private Map<String, FieldMeta> entityFields = new HashMap<String, FieldMeta>();
         private Map<String, String[]> fieldsOptions = new HashMap<String, String[]>();
         private FieldMeta missingFieldsStorage = null;
+        private boolean missingFieldsPassthrough;
+        private FieldMeta[] fields;
+        private FieldPlan allFieldsPlan;
+        private boolean hasViews;
+        private final ConcurrentMap<FieldSet, FieldPlan> plans = new ConcurrentHashMap<FieldSet, FieldPlan>();
+        private Creator creator;
+        private Constructor<T> defaultConstructor;
+        private final ConcurrentMap<FieldSet, ColumnLayout> columnLayouts = new ConcurrentHashMap<FieldSet, ColumnLayout>();
+        private volatile ColumnLayout allColumnsLayout;
 
         public Metadata(Class<T> entityClass) {
             this.entityClass = entityClass;
             readMetadata();
+            compileFields();
+            readCreator();
+            readDefaults();
+        }
+
+        /**
+         * Reads the declared defaults of the compact fields from the prototype instance
+         */
+        private void readDefaults() {
+            T prototype = null;
+            for (FieldMeta fieldMeta : fields) {
+                if (fieldMeta.compact) {
+                    if (prototype == null && defaultConstructor != null) {
+                        try {
+                            prototype = newInstance();
+                        } catch (Exception e) {
+                            throw new MetadataException("Cannot read the default values of " + entityClass + ": " +
+                                    e.getMessage());
+                        }
+                    }
+                    fieldMeta.defaultValue = (prototype != null) ? get(prototype, fieldMeta.name, fieldMeta)
+                            : defaultValue(fieldMeta.field.getType());
+                }
+            }
+        }
+
+        /**
+         * Resolves the creator of the immutable objects or the default constructor (even if it's not public)
+         */
+        private void readCreator() {
+            for (Constructor<?> constructor : entityClass.getDeclaredConstructors()) {
+                if (constructor.getAnnotation(SerializeCreator.class) != null) {
+                    setCreator(new Creator(constructor, null,
+                            readCreatorParams(constructor.getParameterAnnotations())), constructor);
+                }
+            }
+            for (Method method : entityClass.getDeclaredMethods()) {
+                if (method.getAnnotation(SerializeCreator.class) != null) {
+                    if (!Modifier.isStatic(method.getModifiers()) || !entityClass.isAssignableFrom(method.getReturnType())) {
+                        throw new MetadataException("The annotated method '" + method.getName() + "' cannot be " +
+                                "used as creator! It must be static and return " + entityClass + "!");
+                    }
+                    setCreator(new Creator(null, method, readCreatorParams(method.getParameterAnnotations())), method);
+                }
+            }
+            if (creator == null && !entityClass.isInterface() && !Modifier.isAbstract(entityClass.getModifiers())) {
+                try {
+                    defaultConstructor = entityClass.getDeclaredConstructor();
+                    defaultConstructor.setAccessible(true);
+                } catch (NoSuchMethodException ignored) {
+                }
+            }
+        }
+
+        /**
+         * Checks the items of the columnar field without building their metadata (the items may refer to this class)
+         */
+        private boolean hasDefaultConstructorOnly(Class<?> itemClass) {
+            if (itemClass.isInterface() || Modifier.isAbstract(itemClass.getModifiers())) {
+                return false;
+            }
+            for (Constructor<?> constructor : itemClass.getDeclaredConstructors()) {
+                if (constructor.getAnnotation(SerializeCreator.class) != null) {
+                    return false;
+                }
+            }
+            for (Method method : itemClass.getDeclaredMethods()) {
+                if (method.getAnnotation(SerializeCreator.class) != null) {
+                    return false;
+                }
+            }
+            try {
+                itemClass.getDeclaredConstructor();
+                return true;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+        private void setCreator(Creator creator, AccessibleObject member) {
+            if (this.creator != null) {
+                throw new MetadataException("Class '" + entityClass + "' must have only 1 constructor or method " +
+                        "annotated with @SerializeCreator!");
+            }
+            member.setAccessible(true);
+            this.creator = creator;
+        }
+
+        private FieldMeta[] readCreatorParams(Annotation[][] paramsAnnotations) {
+            FieldMeta[] params = new FieldMeta[paramsAnnotations.length];
+            for (int i = 0; i < params.length; ++i) {
+                for (Annotation annotation : paramsAnnotations[i]) {
+                    if (annotation instanceof SerializeParam) {
+                        params[i] = entityFields.get(((SerializeParam) annotation).value());
+                    }
+                }
+                if (params[i] == null) {
+                    throw new MetadataException("Parameter " + i + " of the creator of '" + entityClass + "' must " +
+                            "be annotated with @SerializeParam referencing the serializable field!");
+                }
+                if (params[i].customListItemDeserializer != null || params[i].customListItemInitializer != null ||
+                        (params[i].customFieldDeserializer != null
+                                && !Modifier.isStatic(params[i].customFieldDeserializer.getModifiers()))) {
+                    throw new MetadataException("Field '" + params[i].name + "' of '" + entityClass + "' is the " +
+                            "creator parameter and cannot be deserialized by the instance methods!");
+                }
+                params[i].creatorParam = true;
+            }
+            return params;
+        }
+
+        private T newInstance() throws Exception {
+            if (defaultConstructor == null) {
+                throw new MetadataException("Cannot instantiate " + entityClass + ": class must have the default " +
+                        "constructor or the @SerializeCreator!");
+            }
+            return defaultConstructor.newInstance();
         }
 
         public Map<String, FieldMeta> getEntityFields() {
             return entityFields;
         }
 
-        private Method findSetter(Field field) {
-            try {
-                return entityClass.getMethod("set" + WordUtils.capitalize(field.getName()), field.getType());
-            } catch (NoSuchMethodException ignored) {
+        private void compileFields() {
+            fields = entityFields.values().toArray(new FieldMeta[entityFields.size()]);
+            allFieldsPlan = new FieldPlan(fields.length);
+            for (int i = 0; i < fields.length; ++i) {
+                fields[i].index = i;
+                allFieldsPlan.include(fields[i]);
+                hasViews |= fields[i].views != null;
+            }
+            for (FieldMeta fieldMeta : fields) {
+                if (fieldMeta.views != null) {
+                    for (String view : fieldMeta.views) {
+                        getPlan(FieldSet.view(view));
+                    }
+                }
             }
-            return null;
         }
 
-        private Method findGetter(Field field) {
-            try {
-                return entityClass.getMethod("get" + WordUtils.capitalize(field.getName()));
-            } catch (NoSuchMethodException ignored) {
-                if (Boolean.TYPE.equals(field.getType())) {
-                    try {
-                        return entityClass.getMethod("is" + WordUtils.capitalize(field.getName()));
-                    } catch (NoSuchMethodException ignoredBoolean) {
-                        //ignore
+        /**
+         * Returns the compiled plan for the field set (compiles it at the first call)
+         *
+         * @param fieldSet field set (null means all fields)
+         * @return plan for the field set
+         */
+        private FieldPlan getPlan(FieldSet fieldSet) {
+            if (fieldSet == null) {
+                return allFieldsPlan;
+            }
+            FieldPlan plan = plans.get(fieldSet);
+            if (plan == null) {
+                plan = new FieldPlan(fields.length);
+                for (FieldMeta fieldMeta : fields) {
+                    if (fieldSet.getView() != null) {
+                        if (!hasViews || fieldMeta.inView(fieldSet.getView())) {
+                            plan.include(fieldMeta);
+                            plan.nested[fieldMeta.index] = fieldSet;
+                        }
+                    } else if (fieldSet.contains(fieldMeta.name)) {
+                        plan.include(fieldMeta);
+                        plan.nested[fieldMeta.index] = fieldSet.getNested(fieldMeta.name);
+                    }
+                }
+                if (plans.size() < MAX_CACHED_PLANS) {
+                    FieldPlan existing = plans.putIfAbsent(fieldSet, plan);
+                    if (existing != null) {
+                        plan = existing;
                     }
                 }
             }
-            return null;
+            return plan;
         }
 
-        private Method findCustomListItemInitializer(Method[] methods, Field field) {
-            for (Method m : methods) {
-                CustomListItemInitializer annotation = m.getAnnotation(CustomListItemInitializer.class);
-                if (annotation != null && annotation.listName().equals(field.getName())) {
-                    return validateCustomListItemInitializerMethod(m);
+        /**
+         * Returns the layout of the columnar encoding of the items of this class (compiles it at the first call)
+         *
+         * @param fieldSet field set of the items (null means all fields)
+         * @return columns layout
+         */
+        private ColumnLayout getColumnLayout(FieldSet fieldSet) {
+            ColumnLayout layout = (fieldSet == null) ? allColumnsLayout : columnLayouts.get(fieldSet);
+            if (layout == null) {
+                FieldPlan plan = getPlan(fieldSet);
+                List<FieldMeta> columns = new ArrayList<FieldMeta>();
+                List<String> rest = new ArrayList<String>();
+                for (FieldMeta fieldMeta : fields) {
+                    if (!plan.includes(fieldMeta)) {
+                        continue;
+                    }
+                    if (isColumn(fieldMeta)) {
+                        columns.add(fieldMeta);
+                    } else {
+                        rest.add(fieldMeta.name);
+                    }
+                }
+                FieldSet restSet = null;
+                if (!rest.isEmpty()) {
+                    restSet = (fieldSet == null) ? FieldSet.of(rest) : fieldSet.restrict(rest);
+                }
+                layout = new ColumnLayout(columns.toArray(new FieldMeta[columns.size()]), restSet);
+                if (fieldSet == null) {
+                    allColumnsLayout = layout;
+                } else if (columnLayouts.size() < MAX_CACHED_PLANS) {
+                    ColumnLayout existing = columnLayouts.putIfAbsent(fieldSet, layout);
+                    if (existing != null) {
+                        layout = existing;
+                    }
                 }
             }
-            return null;
+            return layout;
+        }
+
+        private boolean isColumn(FieldMeta fieldMeta) {
+            if (fieldMeta.customFieldSerializer != null || fieldMeta.customFieldDeserializer != null) {
+                return false;
+            }
+            switch (fieldMeta.fieldType) {
+                case BOOL:
+                case INT:
+                case LONG:
+                case FLOAT:
+                case DOUBLE:
+                case STRING:
+                case ENUM:
+                    return true;
+            }
+            return false;
+        }
+
+        private Method findSetter(MethodIndex methods, Field field) {
+            return methods.findPublic("set" + WordUtils.capitalize(field.getName()), field.getType());
+        }
+
+        private Method findGetter(MethodIndex methods, Field field) {
+            Method getter = methods.findPublic("get" + WordUtils.capitalize(field.getName()));
+            if (getter == null && Boolean.TYPE.equals(field.getType())) {
+                getter = methods.findPublic("is" + WordUtils.capitalize(field.getName()));
+            }
+            return getter;
+        }
+
+        private Method findCustomListItemInitializer(MethodIndex methods, Field field) {
+            Method m = methods.listItemInitializers.get(field.getName());
+            return (m != null) ? validateCustomListItemInitializerMethod(m) : null;
         }
 
         private Method validateCustomListItemInitializerMethod(Method m) {
@@ -167,35 +557,28 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
             return m;
         }
 
-        private Method findCustomListItemDeserializer(Method[] methods, Field field) {
-            for (Method m : methods) {
-                CustomListItemDeserializer annotation = m.getAnnotation(CustomListItemDeserializer.class);
-                if (annotation != null && annotation.listName().equals(field.getName())) {
-                    return validateCustomListItemInitializerMethod(m);
-                }
-            }
-            return null;
+        private Method findCustomListItemDeserializer(MethodIndex methods, Field field) {
+            Method m = methods.listItemDeserializers.get(field.getName());
+            return (m != null) ? validateCustomListItemInitializerMethod(m) : null;
         }
 
-        private Method findCustomListItemSerializer(Method[] methods, Field field) {
-            for (Method m : methods) {
-                CustomListItemSerializer annotation = m.getAnnotation(CustomListItemSerializer.class);
-                if (annotation != null && annotation.listName().equals(field.getName())) {
-                    Type returnType = m.getReturnType();
-                    Type[] paramTypes = m.getParameterTypes();
-                    if (returnType.equals(ISFSObject.class)
-                            && paramTypes.length == 1
-                            && paramTypes[0].equals(TransportObject.class)) {
-                        return m;
-                    }
-                    throw new MetadataException("The annotated method '" + m.getName() + "' cannot be used for " +
-                            "custom list item serialization! It must return ISFSObject and receive TransportObject!");
+        private Method findCustomListItemSerializer(MethodIndex methods, Field field) {
+            Method m = methods.listItemSerializers.get(field.getName());
+            if (m != null) {
+                Type returnType = m.getReturnType();
+                Type[] paramTypes = m.getParameterTypes();
+                if (returnType.equals(ISFSObject.class)
+                        && paramTypes.length == 1
+                        && paramTypes[0].equals(TransportObject.class)) {
+                    return m;
                 }
+                throw new MetadataException("The annotated method '" + m.getName() + "' cannot be used for " +
+                        "custom list item serialization! It must return ISFSObject and receive TransportObject!");
             }
             return null;
         }
 
-        private void checkAndSetMissingFieldsStorage(Field f) {
+        private void checkAndSetMissingFieldsStorage(MethodIndex methods, Field f) {
             MissingSerializeFieldsStorage annotation = f.getAnnotation(MissingSerializeFieldsStorage.class);
             if (annotation != null) {
                 if (missingFieldsStorage != null) {
@@ -205,54 +588,52 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
                 Type fieldType = f.getType();
                 Type[] typeArgs = getFieldTypeArguments(f);
                 if (Map.class.isAssignableFrom((Class<?>) fieldType) && typeArgs.length == 2 &&
-                        isString((Class<?>) typeArgs[0]) && Object.class.equals(typeArgs[1])) {
+                        isString((Class<?>) typeArgs[0]) &&
+                        (Object.class.equals(typeArgs[1]) || SFSDataWrapper.class.equals(typeArgs[1]))) {
+                    missingFieldsPassthrough = SFSDataWrapper.class.equals(typeArgs[1]);
                     missingFieldsStorage = new FieldMeta(f.getName());
                     missingFieldsStorage.field = f;
-                    missingFieldsStorage.setter = findSetter(f);
-                    missingFieldsStorage.getter = findGetter(f);
+                    missingFieldsStorage.setter = findSetter(methods, f);
+                    missingFieldsStorage.getter = findGetter(methods, f);
                     if (missingFieldsStorage.setter == null || missingFieldsStorage.getter == null) {
                         f.setAccessible(true);
                     }
                 } else {
                     throw new MetadataException("Field '" + f.getName() + "' annotated as " +
-                            "@MissingSerializeFieldsStorage must be Map<String, Object>!");
+                            "@MissingSerializeFieldsStorage must be Map<String, Object> or Map<String, SFSDataWrapper>!");
                 }
             }
         }
 
-        private Method findCustomFieldDeserializer(Method[] methods, Field field) {
-            for (Method m : methods) {
-                CustomFieldDeserializer annotation = m.getAnnotation(CustomFieldDeserializer.class);
-                if (annotation != null && annotation.fieldName().equals(field.getName())) {
-                    Type returnType = m.getReturnType();
-                    Type[] paramTypes = m.getParameterTypes();
-                    if (returnType.equals(field.getType())
-                            && paramTypes.length == 1
-                            && paramTypes[0].equals(SFSDataWrapper.class)) {
-                        return m;
-                    }
-                    throw new MetadataException("The annotated method '" + m.getName() + "' cannot be used for " +
-                            "custom field serialization! It must return " + field.getType() + " and receive " +
-                            "SFSDataWrapper!");
+        private Method findCustomFieldDeserializer(MethodIndex methods, Field field) {
+            Method m = methods.fieldDeserializers.get(field.getName());
+            if (m != null) {
+                Type returnType = m.getReturnType();
+                Type[] paramTypes = m.getParameterTypes();
+                if (returnType.equals(field.getType())
+                        && paramTypes.length == 1
+                        && paramTypes[0].equals(SFSDataWrapper.class)) {
+                    return m;
                 }
+                throw new MetadataException("The annotated method '" + m.getName() + "' cannot be used for " +
+                        "custom field serialization! It must return " + field.getType() + " and receive " +
+                        "SFSDataWrapper!");
             }
             return null;
         }
 
-        private Method findCustomFieldSerializer(Method[] methods, Field field) {
-            for (Method m : methods) {
-                CustomFieldSerializer annotation = m.getAnnotation(CustomFieldSerializer.class);
-                if (annotation != null && annotation.fieldName().equals(field.getName())) {
-                    Type returnType = m.getReturnType();
-                    Type[] paramTypes = m.getParameterTypes();
-                    if (returnType.equals(SFSDataWrapper.class)
-                            && paramTypes.length == 1
-                            && paramTypes[0].equals(field.getType())) {
-                        return m;
-                    }
-                    throw new MetadataException("The annotated method '" + m.getName() + "' cannot be used for " +
-                            "custom field serialization! It must return SFSDataWrapper and receive " + field.getType() + "!");
+        private Method findCustomFieldSerializer(MethodIndex methods, Field field) {
+            Method m = methods.fieldSerializers.get(field.getName());
+            if (m != null) {
+                Type returnType = m.getReturnType();
+                Type[] paramTypes = m.getParameterTypes();
+                if (returnType.equals(SFSDataWrapper.class)
+                        && paramTypes.length == 1
+                        && paramTypes[0].equals(field.getType())) {
+                    return m;
                 }
+                throw new MetadataException("The annotated method '" + m.getName() + "' cannot be used for " +
+                        "custom field serialization! It must return SFSDataWrapper and receive " + field.getType() + "!");
             }
             return null;
         }
@@ -260,10 +641,12 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
         @SuppressWarnings("unchecked")
         private void readMetadata() {
             final Field[] fields = getFieldsInClassHierarchy(entityClass);
-            final Method[] methods = getMethodsInClassHierarchy(entityClass);
+            final MethodIndex methods = new MethodIndex(getMethodsInClassHierarchy(entityClass), entityClass.getMethods());
 
             SerializeStrategy serializeStrategy = findAnnotationInClassHierarchy(entityClass, SerializeStrategy.class);
             SerializeIgnore ignoreClassFields = entityClass.getAnnotation(SerializeIgnore.class);
+            CompactEnum compactEnums = findAnnotationInClassHierarchy(entityClass, CompactEnum.class);
+            Compact compact = findAnnotationInClassHierarchy(entityClass, Compact.class);
             if (serializeStrategy != null) {
                 this.serializeStrategy = serializeStrategy.type();
             } else {
@@ -287,17 +670,22 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
                 final Serialize config = (annotation != null) ? annotation : Serialize.DEFAULT.get();
 
                 FieldMeta meta = new FieldMeta((!isEmpty(config.name())) ? config.name() : field.getName());
-                meta.getter = findGetter(field);
-                meta.setter = findSetter(field);
+                meta.getter = findGetter(methods, field);
+                meta.setter = findSetter(methods, field);
 
                 if (meta.getter == null || meta.setter == null) {
                     field.setAccessible(true);
                 }
                 meta.config = config;
+                meta.compact = compact != null || field.getAnnotation(Compact.class) != null;
+                SerializeView view = field.getAnnotation(SerializeView.class);
+                if (view != null) {
+                    meta.views = view.value();
+                }
 
                 meta.customFieldDeserializer = findCustomFieldDeserializer(methods, field);
                 meta.customFieldSerializer = findCustomFieldSerializer(methods, field);
-                checkAndSetMissingFieldsStorage(field);
+                checkAndSetMissingFieldsStorage(methods, field);
 
                 meta.type = field.getType();
                 meta.field = field;
@@ -313,21 +701,40 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
                         meta.customListItemInitializer = findCustomListItemInitializer(methods, field);
                         typeArgs = getFieldTypeArguments(field);
                         meta.genericType = (Class<?>) getGenericType(typeArgs[0]);
+                        meta.columnar = field.getAnnotation(Columnar.class) != null;
                         break;
                     case MAP:
                         typeArgs = getFieldTypeArguments(field);
-                        Type[] typeArguments = getTypeArguments(meta.genericType);
-                        if (typeArguments.length > 0) {
-                            meta.genericType = (Class<?>) typeArguments[0];
-                        }
                         meta.type = (Class<?>) getGenericType(typeArgs[1]);
-                        meta.subFieldType = getFieldType(meta.type, typeArguments);
+                        meta.subFieldType = getFieldType(meta.type, new Type[0]);
                         break;
                 }
+                if (meta.fieldType == FieldType.CODEC || meta.subFieldType == FieldType.CODEC) {
+                    meta.codec = (TypeCodec<Object>) TypeCodecs.find(meta.type);
+                }
+                if (compactEnums != null || field.getAnnotation(CompactEnum.class) != null) {
+                    meta.enumWireType = getCompactEnumType(meta);
+                }
                 if (meta.fieldType.equals(FieldType.UNKNOWN) &&
                         meta.customFieldSerializer != null && meta.customFieldDeserializer != null) {
                     meta.fieldType = FieldType.CUSTOM;
                 }
+                if (meta.fieldType.equals(FieldType.UNKNOWN)) {
+                    meta.valueCodec = ValueCodec.compile(field.getGenericType());
+                    if (meta.valueCodec != null) {
+                        meta.fieldType = FieldType.GENERIC;
+                    }
+                }
+                if (field.getAnnotation(Columnar.class) != null && (meta.fieldType != FieldType.ENTITY_ARRAY
+                        || meta.customListItemSerializer != null || meta.customListItemDeserializer != null
+                        || meta.customListItemInitializer != null)) {
+                    throw new MetadataException("Field '" + field.getName() + "' annotated as @Columnar must be " +
+                            "the collection of entities without the custom list item serialization!");
+                }
+                if (meta.columnar && !hasDefaultConstructorOnly(meta.genericType)) {
+                    throw new MetadataException("Items of the field '" + field.getName() + "' annotated as " +
+                            "@Columnar must have the default constructor and no @SerializeCreator!");
+                }
                 if (meta.fieldType != FieldType.UNKNOWN) {
                     entityFields.put(meta.name, meta);
                     fieldsOptions.put(meta.name, meta.config.options());
@@ -335,6 +742,24 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
             }
         }
 
+        /**
+         * Returns the SFS type for the compactly encoded enum field or null if the field is not an enum
+         */
+        @SuppressWarnings("unchecked")
+        private SFSDataType getCompactEnumType(FieldMeta meta) {
+            if (meta.fieldType == FieldType.ENUM || (meta.fieldType == FieldType.MAP && meta.subFieldType == FieldType.ENUM)) {
+                return (maxWireOrdinal(enumClass(meta.type)) <= Byte.MAX_VALUE)
+                        ? SFSDataType.BYTE : SFSDataType.SHORT;
+            } else if (meta.fieldType == FieldType.ENUM_ARRAY) {
+                int maxWireOrdinal = maxWireOrdinal(enumClass(meta.genericType));
+                if (isEnumSetCompatible(meta.type)) {
+                    return (maxWireOrdinal < Long.SIZE) ? SFSDataType.LONG : SFSDataType.LONG_ARRAY;
+                }
+                return (maxWireOrdinal <= Byte.MAX_VALUE) ? SFSDataType.BYTE_ARRAY : SFSDataType.SHORT_ARRAY;
+            }
+            return null;
+        }
+
         private Type getGenericType(Type typeArg) {
             Type genericType = typeArg;
             if (typeArg instanceof WildcardType) {
@@ -347,41 +772,60 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
         }
 
         private FieldType getFieldType(Class<?> type, Type[] typeArgs) {
-            if (TransportObject.class.isAssignableFrom(type)) {
-                return FieldType.ENTITY;
-            } else if (isString(type)) {
-                return FieldType.STRING;
-            } else if (isLong(type)) {
-                return FieldType.LONG;
-            } else if (isDouble(type)) {
-                return FieldType.DOUBLE;
-            } else if (isFloat(type)) {
-                return FieldType.FLOAT;
-            } else if (isBoolean(type)) {
-                return FieldType.BOOL;
-            } else if (isInt(type)) {
-                return FieldType.INT;
-            } else if (isDate(type)) {
-                return FieldType.DATE;
-            } else if (Enum.class.isAssignableFrom(type)) {
-                return FieldType.ENUM;
-            } else if (Collection.class.isAssignableFrom(type)) {
-                if (typeArgs.length == 1) {
-                    Type genericType = getGenericType(typeArgs[0]);
-                    if (TransportObject.class.isAssignableFrom((Class<?>) genericType)) {
-                        return FieldType.ENTITY_ARRAY;
-                    } else if (isString((Class<?>) genericType)) {
-                        return FieldType.STRING_ARRAY;
-                    } else if (isLong((Class<?>) genericType)) {
-                        return FieldType.LONG_ARRAY;
-                    } else if (Enum.class.isAssignableFrom((Class<?>) genericType)) {
-                        return FieldType.ENUM_ARRAY;
+            if (TypeCodecs.find(type) != null) {
+                return FieldType.CODEC;
+            }
+            switch (classify(type)) {
+                case ENTITY:
+                    return FieldType.ENTITY;
+                case STRING:
+                    return FieldType.STRING;
+                case LONG:
+                    return FieldType.LONG;
+                case DOUBLE:
+                    return FieldType.DOUBLE;
+                case FLOAT:
+                    return FieldType.FLOAT;
+                case BOOLEAN:
+                    return FieldType.BOOL;
+                case INT:
+                    return FieldType.INT;
+                case DATE:
+                    return FieldType.DATE;
+                case ENUM:
+                    return FieldType.ENUM;
+                case COLLECTION:
+                    if (typeArgs.length == 1 && getGenericType(typeArgs[0]) instanceof Class) {
+                        switch (classify((Class<?>) getGenericType(typeArgs[0]))) {
+                            case ENTITY:
+                                return FieldType.ENTITY_ARRAY;
+                            case STRING:
+                                return FieldType.STRING_ARRAY;
+                            case LONG:
+                                return FieldType.LONG_ARRAY;
+                            case ENUM:
+                                return FieldType.ENUM_ARRAY;
+                        }
                     }
-                }
-            } else if (Map.class.isAssignableFrom(type)) {
-                if (typeArgs.length == 2 && isString((Class<?>) typeArgs[0])) {
-                    return FieldType.MAP;
-                }
+                    break;
+                case MAP:
+                    if (typeArgs.length == 2 && typeArgs[0] instanceof Class && isString((Class<?>) typeArgs[0])
+                            && getGenericType(typeArgs[1]) instanceof Class) {
+                        switch (getFieldType((Class<?>) getGenericType(typeArgs[1]), new Type[0])) {
+                            case ENTITY:
+                            case STRING:
+                            case LONG:
+                            case DOUBLE:
+                            case FLOAT:
+                            case BOOL:
+                            case INT:
+                            case DATE:
+                            case ENUM:
+                            case CODEC:
+                                return FieldType.MAP;
+                        }
+                    }
+                    break;
             }
             return FieldType.UNKNOWN;
         }
@@ -431,7 +875,7 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
                 if (getter != null) {
                     return getter.invoke(obj);
                 } else {
-                    return getEntityFields().get(fieldName).field.get(obj);
+                    return fieldMeta.field.get(obj);
                 }
             } catch (Exception e) {
                 logAndThrow(new MetadataException("Cannot get field " + fieldName + " for object of " +
@@ -460,89 +904,290 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
 
     @SuppressWarnings("unchecked")
     private <T extends TransportObject> Metadata<T> getMetadata(Class<T> clazz) {
-        if (!metaCache.containsKey(clazz)) {
-            metaCache.put(clazz, new Metadata(clazz));
-        }
-        return metaCache.get(clazz);
+        return (Metadata<T>) metaCache.get(clazz);
     }
 
     @SuppressWarnings("unchecked")
-    @Override
-    public <T extends TransportObject> ISFSObject serialize(T instance) {
-        if (instance != null) {
-            ISFSObject result = new SFSObject();
-            Metadata<T> metadata = (Metadata<T>) getMetadata(instance.getClass());
-            applyPreProcessors(instance);
-            for (String fieldName : metadata.getEntityFields().keySet()) {
-                FieldMeta fieldMeta = metadata.getEntityFields().get(fieldName);
-                if (!fieldMeta.config.serialize()) {
-                    continue;
-                }
-                Object value = metadata.get(instance, fieldName);
-                if (value == null) { // skip null values
-                    continue;
-                }
-                try {
-                    if (fieldMeta.customFieldSerializer != null) {
-                        safePutValue(result, fieldName, (SFSDataWrapper) fieldMeta.customFieldSerializer.invoke(instance, value));
-                    } else switch (fieldMeta.fieldType) {
-                        case BOOL:
-                        case FLOAT:
-                        case DOUBLE:
-                        case INT:
-                        case LONG:
-                        case STRING:
-                        case ENTITY:
-                        case DATE:
-                        case ENUM:
-                        case STRING_ARRAY:
-                        case ENUM_ARRAY:
-                        case LONG_ARRAY:
-                            serializeValue(result, fieldName, fieldMeta.fieldType, value);
-                            break;
-                        case MAP:
-                            ISFSObject mapObj = new SFSObject();
-                            for (Object keyObj : ((Map) value).keySet()) {
-                                String key = (String) keyObj;
-                                serializeValue(mapObj, key, fieldMeta.subFieldType, ((Map) value).get(keyObj));
-                            }
-                            result.putSFSObject(fieldName, mapObj);
-                            break;
-                        case ENTITY_ARRAY:
-                            final ISFSArray entityArray = new SFSArray();
-                            for (Object entity : (Collection) value) {
-                                ISFSObject serializedValue;
-                                if (fieldMeta.customListItemSerializer != null) {
-                                    serializedValue = (ISFSObject) fieldMeta.customListItemSerializer.invoke(instance, entity);
-                                } else {
-                                    serializedValue = serialize((TransportObject) entity);
-                                }
-                                safeAddSFSObject(entityArray, serializedValue);
-                            }
-                            safePutSFSArray(result, fieldName, entityArray);
-                            break;
+    private static <T extends TransportObject> Metadata<T> newMetadata(Class<?> clazz) {
+        return new Metadata<T>((Class<T>) clazz);
+    }
 
-                    }
-                } catch (Exception e) {
-                    logAndThrow(new MetadataException(e));
-                }
-            }
-            if (metadata.missingFieldsStorage != null) {
-                Map<String, Object> storage = (Map<String, Object>) metadata.get(instance,
-                        metadata.missingFieldsStorage.field.getName(), metadata.missingFieldsStorage);
-                for (String mFieldKey : storage.keySet()) {
-                    if (!metadata.getEntityFields().keySet().contains(mFieldKey)) {
-                        safePutDataWrapper(result, mFieldKey, newSfsDataWrapper(storage.get(mFieldKey)));
+    /**
+     * Releases the metadata of all the classes loaded by the classloader.
+     * Should be called when the extension is destroyed to let its classloader be unloaded.
+     *
+     * @param classLoader classloader of the extension
+     */
+    public static void invalidateMetadata(ClassLoader classLoader) {
+        metaCache.invalidate(classLoader);
+        metadataGeneration.incrementAndGet();
+    }
+
+    /**
+     * Releases the metadata of all the classes
+     */
+    public static void invalidateMetadata() {
+        metaCache.clear();
+        metadataGeneration.incrementAndGet();
+    }
+
+    /**
+     * Resolves the metadata of the class once, so the (de)serialization through the returned binding
+     * does not look it up on each call (e.g. for the request class of the handler).
+     * The binding resolves the metadata again after it's invalidated (e.g. by registering a {@link TypeCodec}).
+     *
+     * @param clazz class of the objects
+     * @return binding of the class
+     */
+    public <T extends TransportObject> Binding<T> bind(Class<T> clazz) {
+        return new Binding<T>(clazz);
+    }
+
+    /**
+     * Serializer bound to the metadata of the class. The instances of the subclasses are (de)serialized
+     * by their own metadata.
+     */
+    public final class Binding<T extends TransportObject> {
+        private final Class<T> type;
+        private volatile Bound bound;
+
+        /**
+         * Metadata of the class resolved within the generation of the metadata cache
+         */
+        private final class Bound {
+            final int generation = metadataGeneration.get();
+            final Metadata<T> metadata = getMetadata(type);
+            final T prototype;
+
+            private Bound() {
+                T defaults = null;
+                if (metadata.creator == null && metadata.defaultConstructor != null) {
+                    try {
+                        defaults = metadata.newInstance();
+                    } catch (Exception e) {
+                        logAndThrow(new MetadataException(e));
                     }
                 }
+                this.prototype = defaults;
             }
-            applyPostProcessors(result, instance);
-            return result;
+        }
+
+        private Binding(Class<T> type) {
+            this.type = type;
+            this.bound = new Bound();
+        }
+
+        private Bound bound() {
+            Bound current = bound;
+            if (current.generation != metadataGeneration.get()) {
+                bound = current = new Bound();
+            }
+            return current;
+        }
+
+        public Class<T> getType() {
+            return type;
+        }
+
+        /**
+         * @return true if the instances may be reused (they are mutable and can be reset to the defaults)
+         */
+        public boolean isReusable() {
+            return bound().prototype != null;
+        }
+
+        /**
+         * @return new instance with the default values
+         */
+        public T newInstance() {
+            try {
+                return bound().metadata.newInstance();
+            } catch (Exception e) {
+                logAndThrow(new MetadataException(e));
+            }
+            return null;
+        }
+
+        /**
+         * @param object serialized object
+         * @return new instance
+         */
+        public T deserialize(ISFSObject object) {
+            if (object == null) {
+                return null;
+            }
+            final Metadata<T> metadata = bound().metadata;
+            try {
+                if (metadata.creator != null) {
+                    return deserializeWithCreator(metadata, object, null);
+                }
+                return deserializeFields(metadata, metadata.newInstance(), object, null, false);
+            } catch (Exception e) {
+                logAndThrow(e);
+            }
+            return null;
+        }
+
+        /**
+         * @param instance object to be updated
+         * @param object   serialized object
+         * @return updated instance
+         */
+        public T deserialize(T instance, ISFSObject object) {
+            if (instance == null || instance.getClass() != type) {
+                return SFSSerializer.this.deserialize(instance, object);
+            }
+            return deserializeFields(bound().metadata, instance, object, null, false);
+        }
+
+        /**
+         * @param instance object to be serialized
+         * @return serialized object
+         */
+        public ISFSObject serialize(T instance) {
+            if (instance != null && instance.getClass() != type) {
+                return SFSSerializer.this.serialize(instance);
+            }
+            return SFSSerializer.this.serialize(bound().metadata, instance, null);
+        }
+
+        /**
+         * Resets the serializable fields of the reusable instance to their defaults
+         *
+         * @param instance object to be reset
+         * @return reset instance
+         */
+        public T reset(T instance) {
+            final Bound current = bound();
+            if (current.prototype == null) {
+                logAndThrow(new MetadataException("Instances of " + type + " cannot be reused!"));
+            }
+            return copyInto(current.metadata, current.prototype, instance);
+        }
+    }
+
+    @Override
+    public <T extends TransportObject> ISFSObject serialize(T instance) {
+        return serialize(instance, null);
+    }
+
+    /**
+     * Serializes the fields of the view (see {@link SerializeView}), including the nested entities fields
+     *
+     * @param instance object to be serialized
+     * @param view     view name
+     * @return serialized object
+     */
+    public <T extends TransportObject> ISFSObject serializeView(T instance, String view) {
+        return serialize(instance, FieldSet.view(view));
+    }
+
+    /**
+     * Serializes only the selected fields of the instance
+     *
+     * @param instance object to be serialized
+     * @param fieldSet fields to be serialized (null means all fields)
+     * @return serialized object
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends TransportObject> ISFSObject serialize(T instance, FieldSet fieldSet) {
+        return (instance != null) ? serialize((Metadata<T>) getMetadata(instance.getClass()), instance, fieldSet) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends TransportObject> ISFSObject serialize(Metadata<T> metadata, T instance, FieldSet fieldSet) {
+        if (instance != null) {
+            ISFSObject result = new SFSObject();
+            FieldPlan plan = metadata.getPlan(fieldSet);
+            applyPreProcessors(instance);
+            for (FieldMeta fieldMeta : metadata.fields) {
+                if (!fieldMeta.config.serialize() || !plan.includes(fieldMeta)) {
+                    continue;
+                }
+                final String fieldName = fieldMeta.name;
+                final FieldSet nested = plan.nested[fieldMeta.index];
+                Object value = metadata.get(instance, fieldName, fieldMeta);
+                if (value == null) { // skip null values
+                    continue;
+                }
+                if (fieldMeta.compact && value.equals(fieldMeta.defaultValue)) { // skip default values
+                    continue;
+                }
+                try {
+                    if (fieldMeta.customFieldSerializer != null) {
+                        safePutValue(result, fieldName, (SFSDataWrapper) fieldMeta.customFieldSerializer.invoke(instance, value));
+                    } else switch (fieldMeta.fieldType) {
+                        case BOOL:
+                        case FLOAT:
+                        case DOUBLE:
+                        case INT:
+                        case LONG:
+                        case STRING:
+                        case ENTITY:
+                        case DATE:
+                        case ENUM:
+                        case STRING_ARRAY:
+                        case ENUM_ARRAY:
+                        case LONG_ARRAY:
+                        case CODEC:
+                        case GENERIC:
+                            serializeValue(result, fieldName, fieldMeta, fieldMeta.fieldType, value, nested);
+                            break;
+                        case MAP:
+                            ISFSObject mapObj = new SFSObject();
+                            for (Object keyObj : ((Map) value).keySet()) {
+                                String key = (String) keyObj;
+                                serializeValue(mapObj, key, fieldMeta, fieldMeta.subFieldType, ((Map) value).get(keyObj),
+                                        nested);
+                            }
+                            result.putSFSObject(fieldName, mapObj);
+                            break;
+                        case ENTITY_ARRAY:
+                            if (fieldMeta.columnar && hasItemsOfType((Collection<?>) value, fieldMeta.genericType)) {
+                                result.putSFSObject(fieldName,
+                                        serializeColumnar(fieldMeta, (Collection<?>) value, nested));
+                                break;
+                            }
+                            final ISFSArray entityArray = new SFSArray();
+                            for (Object entity : (Collection) value) {
+                                ISFSObject serializedValue;
+                                if (fieldMeta.customListItemSerializer != null) {
+                                    serializedValue = (ISFSObject) fieldMeta.customListItemSerializer.invoke(instance, entity);
+                                } else {
+                                    serializedValue = serialize((TransportObject) entity, nested);
+                                }
+                                safeAddSFSObject(entityArray, serializedValue);
+                            }
+                            safePutSFSArray(result, fieldName, entityArray);
+                            break;
+
+                    }
+                } catch (Exception e) {
+                    logAndThrow(new MetadataException(e));
+                }
+            }
+            if (metadata.missingFieldsStorage != null) {
+                Map<String, Object> storage = (Map<String, Object>) metadata.get(instance,
+                        metadata.missingFieldsStorage.field.getName(), metadata.missingFieldsStorage);
+                if (storage != null) {
+                    for (Map.Entry<String, Object> entry : storage.entrySet()) {
+                        if (!metadata.getEntityFields().containsKey(entry.getKey())) {
+                            // wrappers kept in the passthrough mode are forwarded verbatim
+                            safePutDataWrapper(result, entry.getKey(), (metadata.missingFieldsPassthrough)
+                                    ? (SFSDataWrapper) entry.getValue() : newSfsDataWrapper(entry.getValue()));
+                        }
+                    }
+                }
+            }
+            applyPostProcessors(result, instance);
+            return result;
         }
         return null;
     }
 
-    private void serializeValue(ISFSObject result, String fieldName, FieldType fieldType, Object value) {
+    @SuppressWarnings("unchecked")
+    private void serializeValue(ISFSObject result, String fieldName, FieldMeta fieldMeta, FieldType fieldType,
+                                Object value, FieldSet nested) {
         switch (fieldType) {
             case BOOL:
                 safePutBoolean(result, fieldName, (Boolean) value);
@@ -554,147 +1199,524 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
                 safePutDouble(result, fieldName, (Double) value);
                 break;
             case INT:
-                safePutInt(result, fieldName, (Integer) value);
+                if (fieldMeta.compact) {
+                    putCompactIntegral(result, fieldName, (Integer) value);
+                } else {
+                    safePutInt(result, fieldName, (Integer) value);
+                }
                 break;
             case LONG:
-                safePutLong(result, fieldName, (Long) value);
+                if (fieldMeta.compact) {
+                    putCompactIntegral(result, fieldName, (Long) value);
+                } else {
+                    safePutLong(result, fieldName, (Long) value);
+                }
                 break;
             case STRING:
                 safePutString(result, fieldName, (String) value);
                 break;
             case ENTITY:
-                safePutSFSObject(result, fieldName, serialize((TransportObject) value));
+                safePutSFSObject(result, fieldName, serialize((TransportObject) value, nested));
                 break;
             case DATE:
                 safePutString(result, fieldName, new SimpleDateFormat(DEFAULT_DATE_FORMAT).format(value));
                 break;
             case ENUM:
-                safePutString(result, fieldName, ((Enum) value).name());
+                if (fieldMeta.enumWireType != null) {
+                    serializeCompactEnum(result, fieldName, fieldMeta, value);
+                } else {
+                    safePutString(result, fieldName, ((Enum) value).name());
+                }
                 break;
             case STRING_ARRAY:
                 result.putUtfStringArray(fieldName, (Collection<String>) value);
                 break;
             case ENUM_ARRAY:
-                result.putUtfStringArray(fieldName, EnumUtil.toStringCollection((Collection<Enum>) value));
+                if (fieldMeta.enumWireType != null) {
+                    serializeCompactEnum(result, fieldName, fieldMeta, value);
+                } else {
+                    result.putUtfStringArray(fieldName, EnumUtil.toStringCollection((Collection<Enum>) value));
+                }
                 break;
             case LONG_ARRAY:
                 result.putLongArray(fieldName, (Collection<Long>) value);
                 break;
+            case CODEC:
+                safePutDataWrapper(result, fieldName, fieldMeta.codec.encode(value));
+                break;
+            case GENERIC:
+                SFSDataWrapper wrapper;
+                try {
+                    wrapper = fieldMeta.valueCodec.encode(this, value, nested);
+                } catch (MetadataException e) {
+                    throw new MetadataException("Cannot serialize the field '" + fieldName + "': " + e.getMessage());
+                }
+                safePutDataWrapper(result, fieldName, wrapper);
+                break;
         }
     }
 
-    private SFSDataWrapper newSfsDataWrapper(Object value) {
-        if (value != null) {
-            SFSDataType dataType = null;
-            Class<?> valueClass = value.getClass();
-            if (isString(valueClass)) {
-                dataType = SFSDataType.UTF_STRING;
-            } else if (isLong(valueClass)) {
-                dataType = SFSDataType.LONG;
-            } else if (isInt(valueClass)) {
-                dataType = SFSDataType.INT;
-            } else if (isDouble(valueClass)) {
-                dataType = SFSDataType.DOUBLE;
-            } else if (isFloat(valueClass)) {
-                dataType = SFSDataType.FLOAT;
-            } else if (isBoolean(valueClass)) {
-                dataType = SFSDataType.BOOL;
-            } else if (value instanceof TransportObject) {
-                dataType = SFSDataType.SFS_OBJECT;
-                value = serialize((TransportObject) value);
-            }
-
-            if (dataType != null) {
-                return new SFSDataWrapper(dataType, value);
+    /**
+     * @return true if all the non-null items are exactly of the type (the columns don't hold the subclasses fields)
+     */
+    private static boolean hasItemsOfType(Collection<?> items, Class<?> type) {
+        for (Object item : items) {
+            if (item != null && item.getClass() != type) {
+                return false;
             }
         }
-        return null;
+        return true;
     }
 
+    /**
+     * Serializes the collection of entities into the columns (see {@link Columnar})
+     */
     @SuppressWarnings("unchecked")
-    @Override
-    public <T extends TransportObject> T deserialize(T instance, ISFSObject object) {
-        try {
-            if (instance == null) {
-                logAndThrow(new MetadataException("Cannot deserialize to a null instance!"));
-            }
-            Metadata<T> metadata = (Metadata<T>) getMetadata(instance.getClass());
-            Map<String, Object> missedStorage = new HashMap<String, Object>();
-            for (String fieldName : object.getKeys()) {
-                if (metadata.getEntityFields().containsKey(fieldName)) {
-                    FieldMeta fieldMeta = metadata.getEntityFields().get(fieldName);
-                    if (!fieldMeta.config.deserialize()) {
-                        continue;
+    private ISFSObject serializeColumnar(FieldMeta fieldMeta, Collection<?> value, FieldSet nested) {
+        final Metadata<TransportObject> metadata = getMetadata((Class<TransportObject>) fieldMeta.genericType);
+        final ColumnLayout layout = metadata.getColumnLayout(nested);
+        final List<TransportObject> rows = new ArrayList<TransportObject>(value.size());
+        byte[] rowNulls = null;
+        int total = 0;
+        for (Object row : value) {
+            if (row != null) {
+                rows.add((TransportObject) row);
+            } else {
+                if (rowNulls == null) {
+                    rowNulls = new byte[(value.size() + 7) >>> 3];
+                }
+                rowNulls[total >>> 3] |= 1 << (total & 7);
+            }
+            ++total;
+        }
+        final int count = rows.size();
+        final ISFSObject result = new SFSObject();
+        result.putInt("n", total);
+        if (rowNulls != null) {
+            result.putByteArray("x", rowNulls);
+        }
+        if (layout.rest != null) {
+            ISFSArray restArray = new SFSArray();
+            for (TransportObject row : rows) {
+                restArray.addSFSObject(serialize(row, layout.rest));
+            }
+            result.putSFSArray("r", restArray);
+        } else {
+            for (TransportObject row : rows) {
+                applyPreProcessors(row);
+            }
+        }
+        final ISFSObject columns = new SFSObject();
+        final ISFSObject nulls = new SFSObject();
+        final ISFSObject dictionaries = new SFSObject();
+        for (FieldMeta column : layout.columns) {
+            if (!column.config.serialize()) {
+                continue;
+            }
+            final String name = column.name;
+            final Object[] values = new Object[count];
+            byte[] nullBits = null;
+            for (int i = 0; i < count; ++i) {
+                values[i] = metadata.get(rows.get(i), name, column);
+                if (values[i] == null) {
+                    if (nullBits == null) {
+                        nullBits = new byte[(count + 7) >>> 3];
                     }
-                    Object value = null;
-                    if (fieldMeta.customFieldDeserializer != null) {
-                        value = fieldMeta.customFieldDeserializer.invoke(instance, object.get(fieldName));
-                    } else switch (fieldMeta.fieldType) {
+                    nullBits[i >>> 3] |= 1 << (i & 7);
+                }
+            }
+            switch (column.fieldType) {
+                case BOOL:
+                    List<Boolean> bools = new ArrayList<Boolean>(count);
+                    for (Object v : values) {
+                        bools.add(v != null && (Boolean) v);
+                    }
+                    columns.putBoolArray(name, bools);
+                    break;
+                case INT:
+                case LONG:
+                    SFSDataType integralType = (column.fieldType == FieldType.INT) ? SFSDataType.INT : SFSDataType.LONG;
+                    if (column.compact) {
+                        long min = 0, max = 0;
+                        for (Object v : values) {
+                            if (v != null) {
+                                min = Math.min(min, ((Number) v).longValue());
+                                max = Math.max(max, ((Number) v).longValue());
+                            }
+                        }
+                        integralType = compactIntegralType(min, max);
+                    }
+                    putIntegralColumn(columns, name, values, integralType);
+                    break;
+                case FLOAT:
+                    List<Float> floats = new ArrayList<Float>(count);
+                    for (Object v : values) {
+                        floats.add((v != null) ? (Float) v : 0f);
+                    }
+                    columns.putFloatArray(name, floats);
+                    break;
+                case DOUBLE:
+                    List<Double> doubles = new ArrayList<Double>(count);
+                    for (Object v : values) {
+                        doubles.add((v != null) ? (Double) v : 0d);
+                    }
+                    columns.putDoubleArray(name, doubles);
+                    break;
+                case ENUM:
+                    if (column.enumWireType != null) {
+                        final Object[] ordinals = new Object[count];
+                        for (int i = 0; i < count; ++i) {
+                            ordinals[i] = (values[i] != null) ? toWireOrdinal((Enum<?>) values[i]) : null;
+                        }
+                        putIntegralColumn(columns, name, ordinals, column.enumWireType);
+                    } else {
+                        putDictionaryColumn(columns, dictionaries, name, values);
+                    }
+                    break;
+                case STRING:
+                    putDictionaryColumn(columns, dictionaries, name, values);
+                    break;
+            }
+            if (nullBits != null) {
+                nulls.putByteArray(name, nullBits);
+            }
+        }
+        result.putSFSObject("c", columns);
+        if (nulls.size() > 0) {
+            result.putSFSObject("z", nulls);
+        }
+        if (dictionaries.size() > 0) {
+            result.putSFSObject("d", dictionaries);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the column of strings or enum names as the dictionary and the array of its indexes
+     */
+    private void putDictionaryColumn(ISFSObject columns, ISFSObject dictionaries, String name, Object[] values) {
+        final Map<String, Integer> dictionary = new LinkedHashMap<String, Integer>();
+        final Object[] indexes = new Object[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] != null) {
+                String str = (values[i] instanceof Enum) ? ((Enum) values[i]).name() : (String) values[i];
+                Integer index = dictionary.get(str);
+                if (index == null) {
+                    index = dictionary.size();
+                    dictionary.put(str, index);
+                }
+                indexes[i] = index;
+            }
+        }
+        dictionaries.putUtfStringArray(name, dictionary.keySet());
+        putIntegralColumn(columns, name, indexes, compactIntegralType(0, dictionary.size() - 1));
+    }
+
+    /**
+     * Writes the column of integral values (nulls are written as zeros) as the array of the given type
+     */
+    private void putIntegralColumn(ISFSObject columns, String name, Object[] values, SFSDataType type) {
+        switch (type) {
+            case BYTE:
+                byte[] bytes = new byte[values.length];
+                for (int i = 0; i < values.length; ++i) {
+                    bytes[i] = (values[i] != null) ? ((Number) values[i]).byteValue() : 0;
+                }
+                columns.putByteArray(name, bytes);
+                break;
+            case SHORT:
+                List<Short> shorts = new ArrayList<Short>(values.length);
+                for (Object v : values) {
+                    shorts.add((v != null) ? ((Number) v).shortValue() : 0);
+                }
+                columns.putShortArray(name, shorts);
+                break;
+            case INT:
+                List<Integer> ints = new ArrayList<Integer>(values.length);
+                for (Object v : values) {
+                    ints.add((v != null) ? ((Number) v).intValue() : 0);
+                }
+                columns.putIntArray(name, ints);
+                break;
+            default:
+                List<Long> longs = new ArrayList<Long>(values.length);
+                for (Object v : values) {
+                    longs.add((v != null) ? ((Number) v).longValue() : 0L);
+                }
+                columns.putLongArray(name, longs);
+        }
+    }
+
+    /**
+     * Deserializes the collection of entities from the columns (see {@link Columnar})
+     */
+    @SuppressWarnings("unchecked")
+    private Collection<Object> deserializeColumnar(FieldMeta fieldMeta, ISFSObject object, FieldSet nested)
+            throws Exception {
+        final Metadata<TransportObject> metadata = getMetadata((Class<TransportObject>) fieldMeta.genericType);
+        final ColumnLayout layout = metadata.getColumnLayout(nested);
+        final int total = object.getInt("n");
+        final byte[] rowNulls = object.containsKey("x") ? object.getByteArray("x") : null;
+        final TransportObject[] items = new TransportObject[total];
+        final List<TransportObject> rows = new ArrayList<TransportObject>(total);
+        final ISFSArray restArray = object.getSFSArray("r");
+        for (int i = 0; i < total; ++i) {
+            if (rowNulls == null || (rowNulls[i >>> 3] & (1 << (i & 7))) == 0) {
+                TransportObject row = metadata.newInstance();
+                if (restArray != null) {
+                    deserialize(row, restArray.getSFSObject(rows.size()), layout.rest);
+                }
+                rows.add(row);
+                items[i] = row;
+            }
+        }
+        final ISFSObject columns = object.getSFSObject("c");
+        final ISFSObject nulls = object.getSFSObject("z");
+        final ISFSObject dictionaries = object.getSFSObject("d");
+        for (FieldMeta column : layout.columns) {
+            final String name = column.name;
+            if (!column.config.deserialize() || !columns.containsKey(name)) {
+                continue;
+            }
+            final byte[] nullBits = (nulls != null) ? nulls.getByteArray(name) : null;
+            Object[] dictionary = null;
+            if (dictionaries != null && dictionaries.containsKey(name)) {
+                dictionary = dictionaries.getUtfStringArray(name).toArray();
+                if (column.fieldType == FieldType.ENUM) {
+                    for (int i = 0; i < dictionary.length; ++i) {
+                        dictionary[i] = fromWireValue(enumClass(column.type), dictionary[i]);
+                    }
+                }
+            }
+            int i = 0;
+            for (Object item : columnItems(columns.get(name))) {
+                Object value = null;
+                if (nullBits == null || (nullBits[i >>> 3] & (1 << (i & 7))) == 0) {
+                    switch (column.fieldType) {
                         case BOOL:
-                        case FLOAT:
-                        case DOUBLE:
+                            value = item;
+                            break;
                         case INT:
+                            value = ((Number) item).intValue();
+                            break;
                         case LONG:
-                        case STRING:
-                        case ENTITY:
-                        case DATE:
-                        case ENUM:
-                        case STRING_ARRAY:
-                        case LONG_ARRAY:
-                        case ENUM_ARRAY:
-                            value = deserializeValue(object, fieldMeta.fieldType, fieldMeta.name,
-                                    fieldMeta.type, fieldMeta.genericType);
+                            value = ((Number) item).longValue();
                             break;
-                        case MAP:
-                            Map map = new HashMap();
-                            ISFSObject mapObj = object.getSFSObject(fieldName);
-                            for (String key : mapObj.getKeys()) {
-                                map.put(key, deserializeValue(
-                                        mapObj, fieldMeta.subFieldType, key, fieldMeta.type, fieldMeta.genericType
-                                ));
-                            }
-                            value = map;
+                        case FLOAT:
+                            value = ((Number) item).floatValue();
                             break;
-                        case ENTITY_ARRAY:
-                            ISFSArray arrValue = object.getSFSArray(fieldName);
-                            Iterator<SFSDataWrapper> iterator = arrValue.iterator();
-                            value = instantiateCollection((Class<? extends Collection>) fieldMeta.type);
-                            while (iterator.hasNext()) {
-                                SFSDataWrapper wrapper = iterator.next();
-                                if (wrapper.getTypeId() == SFSDataType.SFS_OBJECT) {
-                                    if (fieldMeta.customListItemDeserializer != null) {
-                                        ((Collection) value).add(
-                                                fieldMeta.customListItemDeserializer.invoke(instance, wrapper.getObject())
-                                        );
-                                    } else if (fieldMeta.customListItemInitializer != null) {
-                                        ((Collection) value).add(
-                                                deserialize(
-                                                        (TransportObject) fieldMeta.customListItemInitializer.invoke
-                                                                (instance, wrapper.getObject()),
-                                                        (ISFSObject) wrapper.getObject()
-                                                )
-                                        );
-                                    } else if (fieldMeta.genericType != null && !fieldMeta.genericType.isInterface()
-                                            && !Modifier.isAbstract(fieldMeta.genericType.getModifiers())) {
-                                        ((Collection) value).add(
-                                                deserialize(
-                                                        (Class<? extends TransportObject>) fieldMeta.genericType,
-                                                        (ISFSObject) wrapper.getObject()
-                                                )
-
-                                        );
-                                    }
-                                }
-                            }
+                        case DOUBLE:
+                            value = ((Number) item).doubleValue();
+                            break;
+                        case STRING:
+                        case ENUM:
+                            value = (dictionary != null) ? dictionary[((Number) item).intValue()]
+                                    : fromWireValue(enumClass(column.type), item);
                             break;
                     }
+                }
+                metadata.set(rows.get(i++), name, value, column);
+            }
+        }
+        Collection<Object> result = newCollection(fieldMeta.type, total);
+        result.addAll(Arrays.asList(items));
+        return result;
+    }
+
+    /**
+     * Returns the items of the column array (byte arrays are boxed)
+     */
+    private Collection<?> columnItems(SFSDataWrapper wrapper) {
+        if (wrapper.getObject() instanceof byte[]) {
+            byte[] bytes = (byte[]) wrapper.getObject();
+            List<Byte> items = new ArrayList<Byte>(bytes.length);
+            for (byte b : bytes) {
+                items.add(b);
+            }
+            return items;
+        }
+        return (Collection<?>) wrapper.getObject();
+    }
+
+    /**
+     * Writes the integral value using the smallest SFS type it fits
+     */
+    private void putCompactIntegral(ISFSObject result, String fieldName, long value) {
+        switch (compactIntegralType(value, value)) {
+            case BYTE:
+                result.putByte(fieldName, (byte) value);
+                break;
+            case SHORT:
+                result.putShort(fieldName, (short) value);
+                break;
+            case INT:
+                result.putInt(fieldName, (int) value);
+                break;
+            default:
+                result.putLong(fieldName, value);
+        }
+    }
+
+    /**
+     * Returns the smallest integral SFS type fitting the values from the range
+     */
+    private static SFSDataType compactIntegralType(long min, long max) {
+        if (min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE) {
+            return SFSDataType.BYTE;
+        } else if (min >= Short.MIN_VALUE && max <= Short.MAX_VALUE) {
+            return SFSDataType.SHORT;
+        } else if (min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE) {
+            return SFSDataType.INT;
+        }
+        return SFSDataType.LONG;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Enum<?>> enumClass(Class<?> type) {
+        return (Class<? extends Enum<?>>) type;
+    }
+
+    /**
+     * Instantiates the collection of the field type (the list of the expected size if the type allows it)
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> Collection<E> newCollection(Class<?> type, int size) {
+        if (type.isAssignableFrom(ArrayList.class)) {
+            return new ArrayList<E>(size);
+        }
+        return instantiateCollection(type.asSubclass(Collection.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void serializeCompactEnum(ISFSObject result, String fieldName, FieldMeta fieldMeta, Object value) {
+        switch (fieldMeta.enumWireType) {
+            case BYTE:
+                result.putByte(fieldName, (byte) toWireOrdinal((Enum<?>) value));
+                break;
+            case SHORT:
+                result.putShort(fieldName, (short) toWireOrdinal((Enum<?>) value));
+                break;
+            case LONG:
+                result.putLong(fieldName, toBitmask(enumClass(fieldMeta.genericType), (Collection<Enum<?>>) value)[0]);
+                break;
+            case LONG_ARRAY:
+                long[] words = toBitmask(enumClass(fieldMeta.genericType), (Collection<Enum<?>>) value);
+                List<Long> wordsList = new ArrayList<Long>(words.length);
+                for (long word : words) {
+                    wordsList.add(word);
+                }
+                result.putLongArray(fieldName, wordsList);
+                break;
+            case BYTE_ARRAY:
+                byte[] bytes = new byte[((Collection<?>) value).size()];
+                int i = 0;
+                for (Object item : (Collection<?>) value) {
+                    bytes[i++] = (byte) toWireOrdinal((Enum<?>) item);
+                }
+                result.putByteArray(fieldName, bytes);
+                break;
+            case SHORT_ARRAY:
+                List<Short> shorts = new ArrayList<Short>(((Collection<?>) value).size());
+                for (Object item : (Collection<?>) value) {
+                    shorts.add((short) toWireOrdinal((Enum<?>) item));
+                }
+                result.putShortArray(fieldName, shorts);
+                break;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private SFSDataWrapper newSfsDataWrapper(Object value) {
+        if (value != null) {
+            Class<?> valueClass = value.getClass();
+            switch (classify(valueClass)) {
+                case STRING:
+                    return new SFSDataWrapper(SFSDataType.UTF_STRING, value);
+                case LONG:
+                    return new SFSDataWrapper(SFSDataType.LONG, value);
+                case INT:
+                    return new SFSDataWrapper(SFSDataType.INT, value);
+                case DOUBLE:
+                    return new SFSDataWrapper(SFSDataType.DOUBLE, value);
+                case FLOAT:
+                    return new SFSDataWrapper(SFSDataType.FLOAT, value);
+                case BOOLEAN:
+                    return new SFSDataWrapper(SFSDataType.BOOL, value);
+                case ENTITY:
+                    return new SFSDataWrapper(SFSDataType.SFS_OBJECT, serialize((TransportObject) value));
+                case OTHER:
+                    if (value instanceof ISFSObject) {
+                        return new SFSDataWrapper(SFSDataType.SFS_OBJECT, value);
+                    } else if (value instanceof ISFSArray) {
+                        return new SFSDataWrapper(SFSDataType.SFS_ARRAY, value);
+                    } else if (value instanceof byte[]) {
+                        return new SFSDataWrapper(SFSDataType.BYTE_ARRAY, value);
+                    }
+                    TypeCodec<Object> codec = (TypeCodec<Object>) TypeCodecs.find(valueClass);
+                    if (codec != null) {
+                        return codec.encode(value);
+                    }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public <T extends TransportObject> T deserialize(T instance, ISFSObject object) {
+        return deserialize(instance, object, null);
+    }
+
+    /**
+     * Deserializes only the selected fields into the instance
+     *
+     * @param instance object to be updated
+     * @param object   serialized object
+     * @param fieldSet fields to be deserialized (null means all fields)
+     * @return updated instance
+     */
+    public <T extends TransportObject> T deserialize(T instance, ISFSObject object, FieldSet fieldSet) {
+        return deserializeFields(instance, object, fieldSet, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends TransportObject> T deserializeFields(T instance, ISFSObject object, FieldSet fieldSet,
+                                                            boolean skipCreatorParams) {
+        if (instance == null) {
+            logAndThrow(new MetadataException("Cannot deserialize to a null instance!"));
+        }
+        return deserializeFields((Metadata<T>) getMetadata(instance.getClass()), instance, object, fieldSet,
+                skipCreatorParams);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends TransportObject> T deserializeFields(Metadata<T> metadata, T instance, ISFSObject object,
+                                                            FieldSet fieldSet, boolean skipCreatorParams) {
+        try {
+            FieldPlan plan = metadata.getPlan(fieldSet);
+            Map<String, Object> missedStorage = null;
+            for (Iterator<Map.Entry<String, SFSDataWrapper>> it = object.iterator(); it.hasNext(); ) {
+                Map.Entry<String, SFSDataWrapper> entry = it.next();
+                final String fieldName = entry.getKey();
+                FieldMeta fieldMeta = metadata.getEntityFields().get(fieldName);
+                if (fieldMeta != null) {
+                    if (!fieldMeta.config.deserialize() || !plan.includes(fieldMeta)
+                            || (skipCreatorParams && fieldMeta.creatorParam)) {
+                        continue;
+                    }
+                    Object value = deserializeField(instance, object, fieldMeta, plan.nested[fieldMeta.index]);
                     metadata.set(instance, fieldName, value);
                 } else if (metadata.missingFieldsStorage != null) {
-                    missedStorage.put(fieldName, object.get(fieldName).getObject());
+                    if (missedStorage == null) {
+                        missedStorage = new HashMap<String, Object>();
+                    }
+                    missedStorage.put(fieldName, (metadata.missingFieldsPassthrough)
+                            ? entry.getValue() : entry.getValue().getObject());
                 }
             }
             if (metadata.missingFieldsStorage != null) {
-                metadata.set(instance, metadata.missingFieldsStorage.name, missedStorage, metadata.missingFieldsStorage);
+                metadata.set(instance, metadata.missingFieldsStorage.name,
+                        (missedStorage != null) ? missedStorage : Collections.<String, Object>emptyMap(),
+                        metadata.missingFieldsStorage);
             }
             return instance;
         } catch (Exception e) {
@@ -703,43 +1725,213 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
         return null;
     }
 
-    private Object deserializeValue(ISFSObject object, FieldType fieldType,
-                                    String fieldName, Class<?> type, Class<?> genericType) throws ParseException {
+    /**
+     * Deserializes the value of the field
+     *
+     * @param instance instance owning the custom deserializers (null for the creator parameters)
+     */
+    @SuppressWarnings("unchecked")
+    private Object deserializeField(Object instance, ISFSObject object, FieldMeta fieldMeta, FieldSet nested)
+            throws Exception {
+        final String fieldName = fieldMeta.name;
+        Object value = null;
+        if (fieldMeta.customFieldDeserializer != null) {
+            value = fieldMeta.customFieldDeserializer.invoke(instance, object.get(fieldName));
+        } else switch (fieldMeta.fieldType) {
+            case BOOL:
+            case FLOAT:
+            case DOUBLE:
+            case INT:
+            case LONG:
+            case STRING:
+            case ENTITY:
+            case DATE:
+            case ENUM:
+            case STRING_ARRAY:
+            case LONG_ARRAY:
+            case ENUM_ARRAY:
+            case CODEC:
+            case GENERIC:
+                value = deserializeValue(object, fieldName, fieldMeta, fieldMeta.fieldType, nested);
+                break;
+            case MAP:
+                Map map = new HashMap();
+                ISFSObject mapObj = object.getSFSObject(fieldName);
+                for (String key : mapObj.getKeys()) {
+                    map.put(key, deserializeValue(mapObj, key, fieldMeta, fieldMeta.subFieldType, nested));
+                }
+                value = map;
+                break;
+            case ENTITY_ARRAY:
+                if (object.get(fieldName).getTypeId() == SFSDataType.SFS_OBJECT) {
+                    value = deserializeColumnar(fieldMeta, object.getSFSObject(fieldName), nested);
+                    break;
+                }
+                ISFSArray arrValue = object.getSFSArray(fieldName);
+                Iterator<SFSDataWrapper> iterator = arrValue.iterator();
+                value = instantiateCollection((Class<? extends Collection>) fieldMeta.type);
+                while (iterator.hasNext()) {
+                    SFSDataWrapper wrapper = iterator.next();
+                    if (wrapper.getTypeId() == SFSDataType.SFS_OBJECT) {
+                        if (fieldMeta.customListItemDeserializer != null) {
+                            ((Collection) value).add(
+                                    fieldMeta.customListItemDeserializer.invoke(instance, wrapper.getObject())
+                            );
+                        } else if (fieldMeta.customListItemInitializer != null) {
+                            ((Collection) value).add(
+                                    deserialize(
+                                            (TransportObject) fieldMeta.customListItemInitializer.invoke
+                                                    (instance, wrapper.getObject()),
+                                            (ISFSObject) wrapper.getObject(), nested
+                                    )
+                            );
+                        } else if (fieldMeta.genericType != null && !fieldMeta.genericType.isInterface()
+                                && !Modifier.isAbstract(fieldMeta.genericType.getModifiers())) {
+                            ((Collection) value).add(
+                                    deserialize(
+                                            (Class<? extends TransportObject>) fieldMeta.genericType,
+                                            (ISFSObject) wrapper.getObject(), nested
+                                    )
+
+                            );
+                        }
+                    }
+                }
+                break;
+        }
+        return value;
+    }
+
+    /**
+     * Creates the instance through its creator passing the deserialized values of the parameters
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends TransportObject> T deserializeWithCreator(Metadata<T> metadata, ISFSObject object,
+                                                                 FieldSet fieldSet) throws Exception {
+        final Creator creator = metadata.creator;
+        final FieldPlan plan = metadata.getPlan(fieldSet);
+        final Object[] args = creator.defaults.clone();
+        for (int i = 0; i < args.length; ++i) {
+            FieldMeta fieldMeta = creator.params[i];
+            if (fieldMeta.config.deserialize() && plan.includes(fieldMeta) && object.containsKey(fieldMeta.name)) {
+                Object value = deserializeField(null, object, fieldMeta, plan.nested[fieldMeta.index]);
+                if (value != null) {
+                    args[i] = value;
+                }
+            }
+        }
+        return deserializeFields(metadata, (T) creator.newInstance(args), object, fieldSet, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object deserializeValue(ISFSObject object, String fieldName, FieldMeta fieldMeta, FieldType fieldType,
+                                    FieldSet nested) throws ParseException {
+        final Class<?> type = fieldMeta.type;
         switch (fieldType) {
             case BOOL:
                 return object.getBool(fieldName);
             case FLOAT:
-                return object.getFloat(fieldName);
+                Number floatValue = getNumber(object, fieldName);
+                return (floatValue != null) ? floatValue.floatValue() : null;
             case DOUBLE:
-                return object.getDouble(fieldName);
+                Number doubleValue = getNumber(object, fieldName);
+                return (doubleValue != null) ? doubleValue.doubleValue() : null;
             case INT:
-                return object.getInt(fieldName);
+                Number intValue = getNumber(object, fieldName);
+                return (intValue != null) ? intValue.intValue() : null;
             case LONG:
-                return object.getLong(fieldName);
+                Number longValue = getNumber(object, fieldName);
+                return (longValue != null) ? longValue.longValue() : null;
             case STRING:
                 return object.getUtfString(fieldName);
             case ENTITY:
-                return deserialize((Class<? extends TransportObject>) type, object.getSFSObject(fieldName));
+                return deserialize((Class<? extends TransportObject>) type, object.getSFSObject(fieldName), nested);
             case DATE:
                 return new SimpleDateFormat(DEFAULT_DATE_FORMAT).parse(object.getUtfString(fieldName));
             case ENUM:
-                return EnumUtil.fromString((Class<Enum>) type, object.getUtfString(fieldName));
+                return fromWireValue(enumClass(type), object.get(fieldName).getObject());
             case STRING_ARRAY:
                 return object.getUtfStringArray(fieldName);
             case LONG_ARRAY:
                 return object.getLongArray(fieldName);
             case ENUM_ARRAY:
-                return EnumUtil.fromStringCollection((Class<Enum>) genericType, object.getUtfStringArray(fieldName));
+                return deserializeEnumCollection(fieldMeta, object.get(fieldName));
+            case CODEC:
+                return fieldMeta.codec.decode(object.get(fieldName));
+            case GENERIC:
+                return fieldMeta.valueCodec.decode(this, object.get(fieldName), nested);
         }
         return null;
     }
 
+    /**
+     * Returns the numeric value of any numeric SFS type (narrowed values are widened by the caller)
+     */
+    private Number getNumber(ISFSObject object, String fieldName) {
+        SFSDataWrapper wrapper = object.get(fieldName);
+        return (wrapper != null) ? (Number) wrapper.getObject() : null;
+    }
+
+    /**
+     * Deserializes collection of enums from the names array, ordinals array or bitmask
+     */
     @SuppressWarnings("unchecked")
+    private <E extends Enum<E>> Collection<E> deserializeEnumCollection(FieldMeta fieldMeta, SFSDataWrapper wrapper) {
+        final Class<E> enumClass = (Class<E>) fieldMeta.genericType;
+        final Collection<E> result = isEnumSetCompatible(fieldMeta.type)
+                ? EnumSet.noneOf(enumClass) : SFSSerializer.<E>newCollection(fieldMeta.type, 0);
+        switch (wrapper.getTypeId()) {
+            case LONG:
+                result.addAll(fromBitmask(enumClass, (Long) wrapper.getObject()));
+                break;
+            case LONG_ARRAY:
+                Collection<Long> wordsList = (Collection<Long>) wrapper.getObject();
+                long[] words = new long[wordsList.size()];
+                int i = 0;
+                for (Long word : wordsList) {
+                    words[i++] = word;
+                }
+                result.addAll(fromBitmask(enumClass, words));
+                break;
+            case BYTE_ARRAY:
+                for (byte ordinal : (byte[]) wrapper.getObject()) {
+                    result.add(fromWireOrdinal(enumClass, ordinal));
+                }
+                break;
+            case SHORT_ARRAY:
+                for (Short ordinal : (Collection<Short>) wrapper.getObject()) {
+                    result.add(fromWireOrdinal(enumClass, ordinal));
+                }
+                break;
+            default:
+                for (String name : (Collection<String>) wrapper.getObject()) {
+                    result.add(EnumUtil.fromString(enumClass, name));
+                }
+        }
+        return result;
+    }
+
     @Override
     public <T extends TransportObject> T deserialize(Class<T> clazz, ISFSObject object) {
+        return deserialize(clazz, object, null);
+    }
+
+    /**
+     * Creates the new instance of the class and deserializes only the selected fields into it
+     *
+     * @param clazz    class of the object
+     * @param object   serialized object
+     * @param fieldSet fields to be deserialized (null means all fields)
+     * @return new instance
+     */
+    public <T extends TransportObject> T deserialize(Class<T> clazz, ISFSObject object, FieldSet fieldSet) {
         if (object != null) {
             try {
-                return deserialize(clazz.newInstance(), object);
+                Metadata<T> metadata = getMetadata(clazz);
+                if (metadata.creator != null) {
+                    return deserializeWithCreator(metadata, object, fieldSet);
+                }
+                return deserialize(metadata.newInstance(), object, fieldSet);
             } catch (Exception e) {
                 logAndThrow(e);
             }
@@ -747,4 +1939,170 @@ public class SFSSerializer extends BasicService implements TransportSerializer<I
         return null;
     }
 
+    /**
+     * Creates the deep copy of the object copying its serializable fields directly (without the serialization).
+     * Nested entities, collections, maps and dates are copied, immutable values are shared.
+     * Objects having the {@link me.smecsia.smartfox.tools.annotations.SerializeCreator} are created through it
+     * from the copied values of its parameters, then the rest of the fields are copied.
+     *
+     * @param source object to be copied
+     * @return copy of the object
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends TransportObject> T copy(T source) {
+        if (source == null) {
+            return null;
+        }
+        Metadata<T> metadata = (Metadata<T>) getMetadata(source.getClass());
+        try {
+            if (metadata.creator != null) {
+                return copyWithCreator(metadata, source);
+            }
+            return copyFields(metadata, source, metadata.newInstance(), false);
+        } catch (Exception e) {
+            logAndThrow(new MetadataException(e));
+        }
+        return null;
+    }
+
+    /**
+     * Copies the serializable fields of the source object into the target object (deeply, see {@link #copy})
+     *
+     * @param source object to be copied
+     * @param target object to be updated
+     * @return updated target
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends TransportObject> T copyInto(T source, T target) {
+        return copyInto((Metadata<T>) getMetadata(source.getClass()), source, target);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends TransportObject> T copyInto(Metadata<T> metadata, T source, T target) {
+        if (metadata.creator != null) {
+            logAndThrow(new MetadataException("Cannot copy into the immutable object of " + metadata.entityClass));
+        }
+        try {
+            return copyFields(metadata, source, target, false);
+        } catch (Exception e) {
+            logAndThrow(new MetadataException(e));
+        }
+        return target;
+    }
+
+    /**
+     * Creates the copy through the creator passing the copied values of the parameters
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends TransportObject> T copyWithCreator(Metadata<T> metadata, T source) throws Exception {
+        final Creator creator = metadata.creator;
+        final Object[] args = creator.defaults.clone();
+        for (int i = 0; i < args.length; ++i) {
+            FieldMeta fieldMeta = creator.params[i];
+            Object value = metadata.get(source, fieldMeta.name, fieldMeta);
+            if (value != null) {
+                args[i] = copyValue(source, null, fieldMeta, fieldMeta.fieldType, value);
+            }
+        }
+        return copyFields(metadata, source, (T) creator.newInstance(args), true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends TransportObject> T copyFields(Metadata<T> metadata, T source, T target,
+                                                     boolean skipCreatorParams) throws Exception {
+        for (FieldMeta fieldMeta : metadata.fields) {
+            if (skipCreatorParams && fieldMeta.creatorParam) {
+                continue;
+            }
+            Object value = metadata.get(source, fieldMeta.name, fieldMeta);
+            if (value != null) {
+                value = copyValue(source, target, fieldMeta, fieldMeta.fieldType, value);
+            }
+            metadata.set(target, fieldMeta.name, value, fieldMeta);
+        }
+        if (metadata.missingFieldsStorage != null) {
+            Map<String, Object> storage = (Map<String, Object>) metadata.get(source,
+                    metadata.missingFieldsStorage.name, metadata.missingFieldsStorage);
+            metadata.set(target, metadata.missingFieldsStorage.name,
+                    (storage == null) ? null : copyMissingFields(storage), metadata.missingFieldsStorage);
+        }
+        return target;
+    }
+
+    /**
+     * Copies the missing fields storage along with the nested objects, arrays and byte arrays of the values
+     */
+    private Map<String, Object> copyMissingFields(Map<String, Object> storage) {
+        if (storage.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> result = new HashMap<String, Object>(storage.size() * 2);
+        for (Map.Entry<String, Object> entry : storage.entrySet()) {
+            result.put(entry.getKey(), copyWireValue(entry.getValue()));
+        }
+        return result;
+    }
+
+    private Object copyWireValue(Object value) {
+        if (value instanceof SFSDataWrapper) {
+            SFSDataWrapper wrapper = (SFSDataWrapper) value;
+            return new SFSDataWrapper(wrapper.getTypeId(), copyWireValue(wrapper.getObject()));
+        } else if (value instanceof ISFSObject) {
+            return SFSObject.newFromBinaryData(((ISFSObject) value).toBinary());
+        } else if (value instanceof ISFSArray) {
+            return SFSArray.newFromBinaryData(((ISFSArray) value).toBinary());
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        } else if (value instanceof Collection) {
+            return new ArrayList<Object>((Collection<?>) value);
+        }
+        return value;
+    }
+
+    /**
+     * Copies the value of the field
+     *
+     * @param source object owning the custom serializers
+     * @param target object owning the custom deserializers (null for the creator parameters)
+     */
+    @SuppressWarnings("unchecked")
+    private Object copyValue(Object source, Object target, FieldMeta fieldMeta, FieldType fieldType, Object value)
+            throws Exception {
+        switch (fieldType) {
+            case DATE:
+                return ((Date) value).clone();
+            case ENTITY:
+                return copy((TransportObject) value);
+            case STRING_ARRAY:
+            case LONG_ARRAY:
+            case ENUM_ARRAY:
+                if (value instanceof EnumSet && isEnumSetCompatible(fieldMeta.type)) {
+                    return ((EnumSet<?>) value).clone();
+                }
+                Collection<Object> items = newCollection(fieldMeta.type, ((Collection<?>) value).size());
+                items.addAll((Collection<?>) value);
+                return items;
+            case ENTITY_ARRAY:
+                Collection<Object> entities = newCollection(fieldMeta.type, ((Collection<?>) value).size());
+                for (Object entity : (Collection<?>) value) {
+                    entities.add(copy((TransportObject) entity));
+                }
+                return entities;
+            case MAP:
+                Map<Object, Object> map = new HashMap<Object, Object>();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    map.put(entry.getKey(), (entry.getValue() == null) ? null
+                            : copyValue(source, target, fieldMeta, fieldMeta.subFieldType, entry.getValue()));
+                }
+                return map;
+            case CODEC:
+                return fieldMeta.codec.decode(fieldMeta.codec.encode(value));
+            case GENERIC:
+                return fieldMeta.valueCodec.copy(this, value);
+            case CUSTOM:
+                return fieldMeta.customFieldDeserializer.invoke(target,
+                        fieldMeta.customFieldSerializer.invoke(source, value));
+        }
+        return value;
+    }
 }
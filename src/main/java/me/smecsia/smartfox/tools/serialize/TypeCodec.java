@@ -0,0 +1,33 @@
+package me.smecsia.smartfox.tools.serialize;
+
+import com.smartfoxserver.v2.entities.data.SFSDataWrapper;
+
+/**
+ * Codec of the values of some java type, allows to serialize the types not supported by the serializer natively.
+ * Codecs are registered within {@link TypeCodecs} (or via ServiceLoader) and are resolved into the fields metadata once.
+ *
+ * @author Ilya Sadykov
+ */
+public interface TypeCodec<T> {
+
+    /**
+     * @return java type supported by the codec
+     */
+    Class<T> getType();
+
+    /**
+     * Encodes the non-null value
+     *
+     * @param value value to be encoded
+     * @return SFS representation of the value
+     */
+    SFSDataWrapper encode(T value);
+
+    /**
+     * Decodes the value
+     *
+     * @param wrapper SFS representation of the value
+     * @return decoded value
+     */
+    T decode(SFSDataWrapper wrapper);
+}
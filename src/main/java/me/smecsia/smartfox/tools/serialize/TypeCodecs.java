@@ -0,0 +1,149 @@
+package me.smecsia.smartfox.tools.serialize;
+
+import com.smartfoxserver.v2.entities.data.SFSDataType;
+import com.smartfoxserver.v2.entities.data.SFSDataWrapper;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the type codecs. UUID, BigDecimal and BigInteger codecs are registered by default.
+ * Codecs should be registered before the first (de)serialization of the classes using them,
+ * otherwise the serializer metadata is rebuilt (the existing bindings resolve it again at their next call).
+ *
+ * @author Ilya Sadykov
+ */
+public class TypeCodecs {
+
+    private static final ConcurrentMap<Class<?>, TypeCodec<?>> codecs = new ConcurrentHashMap<Class<?>, TypeCodec<?>>();
+
+    /**
+     * Base codec for the types represented as UTF strings
+     */
+    public static abstract class StringTypeCodec<T> implements TypeCodec<T> {
+        private final Class<T> type;
+
+        protected StringTypeCodec(Class<T> type) {
+            this.type = type;
+        }
+
+        @Override
+        public Class<T> getType() {
+            return type;
+        }
+
+        @Override
+        public SFSDataWrapper encode(T value) {
+            return new SFSDataWrapper(SFSDataType.UTF_STRING, toString(value));
+        }
+
+        @Override
+        public T decode(SFSDataWrapper wrapper) {
+            return fromString((String) wrapper.getObject());
+        }
+
+        protected String toString(T value) {
+            return value.toString();
+        }
+
+        protected abstract T fromString(String value);
+    }
+
+    public static final TypeCodec<UUID> UUID_CODEC = new StringTypeCodec<UUID>(UUID.class) {
+        @Override
+        protected UUID fromString(String value) {
+            return UUID.fromString(value);
+        }
+    };
+
+    public static final TypeCodec<BigDecimal> BIG_DECIMAL_CODEC = new StringTypeCodec<BigDecimal>(BigDecimal.class) {
+        @Override
+        protected String toString(BigDecimal value) {
+            return value.toPlainString();
+        }
+
+        @Override
+        protected BigDecimal fromString(String value) {
+            return new BigDecimal(value);
+        }
+    };
+
+    public static final TypeCodec<BigInteger> BIG_INTEGER_CODEC = new StringTypeCodec<BigInteger>(BigInteger.class) {
+        @Override
+        protected BigInteger fromString(String value) {
+            return new BigInteger(value);
+        }
+    };
+
+    static {
+        codecs.put(UUID.class, UUID_CODEC);
+        codecs.put(BigDecimal.class, BIG_DECIMAL_CODEC);
+        codecs.put(BigInteger.class, BIG_INTEGER_CODEC);
+    }
+
+    /**
+     * Registers the codec (replaces the existing codec of the same type)
+     *
+     * @param codec codec to be registered
+     */
+    public static void register(TypeCodec<?> codec) {
+        codecs.put(codec.getType(), codec);
+        SFSSerializer.invalidateMetadata();
+    }
+
+    /**
+     * Registers all the codecs declared as services (META-INF/services/...TypeCodec) within the classloader
+     *
+     * @param classLoader classloader
+     */
+    public static void registerServices(ClassLoader classLoader) {
+        for (TypeCodec<?> codec : ServiceLoader.load(TypeCodec.class, classLoader)) {
+            codecs.put(codec.getType(), codec);
+        }
+        SFSSerializer.invalidateMetadata();
+    }
+
+    /**
+     * Unregisters the codecs of the types (or codecs themselves) loaded by the classloader
+     *
+     * @param classLoader classloader of the extension
+     */
+    public static void unregister(ClassLoader classLoader) {
+        for (Iterator<Map.Entry<Class<?>, TypeCodec<?>>> it = codecs.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Class<?>, TypeCodec<?>> entry = it.next();
+            if (entry.getKey().getClassLoader() == classLoader || entry.getValue().getClass().getClassLoader() == classLoader) {
+                it.remove();
+            }
+        }
+        SFSSerializer.invalidateMetadata(classLoader);
+    }
+
+    /**
+     * Finds the codec for the type (the codec of the exact type or of its closest supertype)
+     *
+     * @param type java type
+     * @return codec or null if there is no codec for the type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TypeCodec<T> find(Class<T> type) {
+        TypeCodec<?> codec = codecs.get(type);
+        if (codec == null && !type.isPrimitive()) {
+            for (Class<?> superClass = type.getSuperclass(); superClass != null && codec == null;
+                 superClass = superClass.getSuperclass()) {
+                codec = codecs.get(superClass);
+            }
+            for (Class<?> iface : type.getInterfaces()) {
+                if (codec == null) {
+                    codec = codecs.get(iface);
+                }
+            }
+        }
+        return (TypeCodec<T>) codec;
+    }
+}
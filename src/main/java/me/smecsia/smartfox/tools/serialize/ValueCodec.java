@@ -0,0 +1,588 @@
+package me.smecsia.smartfox.tools.serialize;
+
+import com.smartfoxserver.v2.entities.data.*;
+import me.smecsia.common.serialize.TransportObject;
+import me.smecsia.smartfox.tools.error.MetadataException;
+import me.smecsia.smartfox.tools.util.EnumUtil;
+import me.smecsia.smartfox.tools.util.TypesUtil.ValueType;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static me.smecsia.smartfox.tools.serialize.SFSSerializer.DEFAULT_DATE_FORMAT;
+import static me.smecsia.smartfox.tools.util.TypesUtil.classify;
+
+/**
+ * Node of the codecs tree compiled from the generic type of the field (e.g. Map&lt;Integer, List&lt;Entity&gt;&gt;).
+ * The tree is compiled once per field, so the values are (de)serialized without any type inspection.
+ * Collections of the scalars are written as the native SFS arrays, other collections as SFS_ARRAY,
+ * maps as SFS_OBJECT with the keys converted to strings.
+ *
+ * @author Ilya Sadykov
+ */
+abstract class ValueCodec {
+
+    /**
+     * @param serializer serializer used for the nested entities
+     * @param value      not null value
+     * @param nested     projection of the nested entities
+     * @return serialized value
+     */
+    abstract SFSDataWrapper encode(SFSSerializer serializer, Object value, FieldSet nested);
+
+    /**
+     * @param serializer serializer used for the nested entities
+     * @param wrapper    serialized value
+     * @param nested     projection of the nested entities
+     * @return deserialized value
+     */
+    abstract Object decode(SFSSerializer serializer, SFSDataWrapper wrapper, FieldSet nested) throws ParseException;
+
+    /**
+     * @param serializer serializer used for the nested entities
+     * @param value      not null value
+     * @return deep copy of the value (immutable values are returned as is)
+     */
+    Object copy(SFSSerializer serializer, Object value) {
+        return value;
+    }
+
+    /**
+     * Compiles the codecs tree for the type
+     *
+     * @param type generic type
+     * @return codec or null if the type (or any of its type arguments) is not supported
+     */
+    static ValueCodec compile(Type type) {
+        if (type instanceof WildcardType) {
+            type = ((WildcardType) type).getUpperBounds()[0];
+        }
+        final Class<?> rawType;
+        Type[] typeArgs = new Type[0];
+        if (type instanceof ParameterizedType) {
+            rawType = (Class<?>) ((ParameterizedType) type).getRawType();
+            typeArgs = ((ParameterizedType) type).getActualTypeArguments();
+        } else if (type instanceof Class) {
+            rawType = (Class<?>) type;
+        } else {
+            return null;
+        }
+        TypeCodec<?> typeCodec = TypeCodecs.find(rawType);
+        if (typeCodec != null) {
+            return new CustomCodec(typeCodec);
+        }
+        ValueType valueType = classify(rawType);
+        switch (valueType) {
+            case STRING:
+            case LONG:
+            case INT:
+            case DOUBLE:
+            case FLOAT:
+            case BOOLEAN:
+            case SHORT:
+            case BYTE:
+                return new ScalarCodec(valueType);
+            case DATE:
+                return new DateCodec();
+            case ENUM:
+                return new EnumCodec(rawType);
+            case ENTITY:
+                return new EntityCodec(rawType);
+            case COLLECTION:
+                if (typeArgs.length == 1) {
+                    Constructor<?> constructor = getDefaultConstructor(getCollectionImplementation(rawType));
+                    ValueCodec itemCodec = compile(typeArgs[0]);
+                    if (constructor == null || itemCodec == null) {
+                        return null;
+                    }
+                    if (itemCodec instanceof ScalarCodec) {
+                        return new NativeArrayCodec(constructor, (ScalarCodec) itemCodec);
+                    }
+                    return new ArrayCodec(constructor, itemCodec);
+                }
+                return null;
+            case MAP:
+                if (typeArgs.length == 2) {
+                    Constructor<?> constructor = getDefaultConstructor(getMapImplementation(rawType));
+                    KeyCodec keyCodec = KeyCodec.compile(typeArgs[0]);
+                    ValueCodec valueCodec = compile(typeArgs[1]);
+                    if (constructor == null || keyCodec == null || valueCodec == null) {
+                        return null;
+                    }
+                    return new MapCodec(constructor, keyCodec, valueCodec);
+                }
+                return null;
+        }
+        return null;
+    }
+
+    private static boolean isInstantiable(Class<?> type) {
+        return !type.isInterface() && !Modifier.isAbstract(type.getModifiers());
+    }
+
+    private static Class<?> getCollectionImplementation(Class<?> type) {
+        if (isInstantiable(type)) {
+            return type;
+        } else if (type.isAssignableFrom(ArrayList.class)) {
+            return ArrayList.class;
+        } else if (type.isAssignableFrom(HashSet.class)) {
+            return HashSet.class;
+        } else if (type.isAssignableFrom(TreeSet.class)) {
+            return TreeSet.class;
+        } else if (type.isAssignableFrom(LinkedList.class)) {
+            return LinkedList.class;
+        }
+        return null;
+    }
+
+    private static Class<?> getMapImplementation(Class<?> type) {
+        if (isInstantiable(type)) {
+            return type;
+        } else if (type.isAssignableFrom(HashMap.class)) {
+            return HashMap.class;
+        } else if (type.isAssignableFrom(TreeMap.class)) {
+            return TreeMap.class;
+        }
+        return null;
+    }
+
+    /**
+     * @return the default constructor of the implementation resolved once per codec or null if there's none
+     */
+    private static Constructor<?> getDefaultConstructor(Class<?> implClass) {
+        if (implClass == null) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = implClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Object newInstance(Constructor<?> constructor) {
+        try {
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new MetadataException("Cannot instantiate " + constructor.getDeclaringClass() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Scalar value. Numbers are widened/narrowed to the field type, so the narrowed wire values are accepted.
+     */
+    static final class ScalarCodec extends ValueCodec {
+        final ValueType valueType;
+        final SFSDataType dataType;
+        final SFSDataType arrayDataType;
+
+        ScalarCodec(ValueType valueType) {
+            this.valueType = valueType;
+            switch (valueType) {
+                case STRING:
+                    dataType = SFSDataType.UTF_STRING;
+                    arrayDataType = SFSDataType.UTF_STRING_ARRAY;
+                    break;
+                case LONG:
+                    dataType = SFSDataType.LONG;
+                    arrayDataType = SFSDataType.LONG_ARRAY;
+                    break;
+                case INT:
+                    dataType = SFSDataType.INT;
+                    arrayDataType = SFSDataType.INT_ARRAY;
+                    break;
+                case DOUBLE:
+                    dataType = SFSDataType.DOUBLE;
+                    arrayDataType = SFSDataType.DOUBLE_ARRAY;
+                    break;
+                case FLOAT:
+                    dataType = SFSDataType.FLOAT;
+                    arrayDataType = SFSDataType.FLOAT_ARRAY;
+                    break;
+                case BOOLEAN:
+                    dataType = SFSDataType.BOOL;
+                    arrayDataType = SFSDataType.BOOL_ARRAY;
+                    break;
+                case SHORT:
+                    dataType = SFSDataType.SHORT;
+                    arrayDataType = SFSDataType.SHORT_ARRAY;
+                    break;
+                case BYTE:
+                    dataType = SFSDataType.BYTE;
+                    arrayDataType = SFSDataType.BYTE_ARRAY;
+                    break;
+                default:
+                    throw new MetadataException("Type " + valueType + " is not a scalar!");
+            }
+        }
+
+        @Override
+        SFSDataWrapper encode(SFSSerializer serializer, Object value, FieldSet nested) {
+            return new SFSDataWrapper(dataType, value);
+        }
+
+        @Override
+        Object decode(SFSSerializer serializer, SFSDataWrapper wrapper, FieldSet nested) {
+            return convert(wrapper.getObject());
+        }
+
+        Object convert(Object value) {
+            if (value instanceof Number) {
+                Number number = (Number) value;
+                switch (valueType) {
+                    case LONG:
+                        return number.longValue();
+                    case INT:
+                        return number.intValue();
+                    case DOUBLE:
+                        return number.doubleValue();
+                    case FLOAT:
+                        return number.floatValue();
+                    case SHORT:
+                        return number.shortValue();
+                    case BYTE:
+                        return number.byteValue();
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Collection of the scalars serialized as the native SFS array
+     */
+    static final class NativeArrayCodec extends ValueCodec {
+        final Constructor<?> constructor;
+        final ScalarCodec itemCodec;
+
+        NativeArrayCodec(Constructor<?> constructor, ScalarCodec itemCodec) {
+            this.constructor = constructor;
+            this.itemCodec = itemCodec;
+        }
+
+        @Override
+        SFSDataWrapper encode(SFSSerializer serializer, Object value, FieldSet nested) {
+            Collection<?> items = (Collection<?>) value;
+            byte[] bytes = (itemCodec.valueType == ValueType.BYTE) ? new byte[items.size()] : null;
+            int i = 0;
+            for (Object item : items) {
+                if (item == null) {
+                    throw new MetadataException("Native array cannot contain null items (item " + i + ")");
+                }
+                if (bytes != null) {
+                    bytes[i] = (Byte) item;
+                }
+                ++i;
+            }
+            return (bytes != null) ? new SFSDataWrapper(SFSDataType.BYTE_ARRAY, bytes)
+                    : new SFSDataWrapper(itemCodec.arrayDataType, value);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object decode(SFSSerializer serializer, SFSDataWrapper wrapper, FieldSet nested) {
+            Collection<Object> result = (Collection<Object>) newInstance(constructor);
+            Object value = wrapper.getObject();
+            if (value instanceof byte[]) {
+                for (byte item : (byte[]) value) {
+                    result.add(itemCodec.convert(item));
+                }
+            } else {
+                for (Object item : (Collection<?>) value) {
+                    result.add(itemCodec.convert(item));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object copy(SFSSerializer serializer, Object value) {
+            Collection<Object> result = (Collection<Object>) newInstance(constructor);
+            result.addAll((Collection<?>) value);
+            return result;
+        }
+    }
+
+    /**
+     * Collection of the complex values serialized as SFS_ARRAY
+     */
+    static final class ArrayCodec extends ValueCodec {
+        final Constructor<?> constructor;
+        final ValueCodec itemCodec;
+
+        ArrayCodec(Constructor<?> constructor, ValueCodec itemCodec) {
+            this.constructor = constructor;
+            this.itemCodec = itemCodec;
+        }
+
+        @Override
+        SFSDataWrapper encode(SFSSerializer serializer, Object value, FieldSet nested) {
+            ISFSArray array = new SFSArray();
+            for (Object item : (Collection<?>) value) {
+                if (item == null) {
+                    array.addNull();
+                } else {
+                    array.add(itemCodec.encode(serializer, item, nested));
+                }
+            }
+            return new SFSDataWrapper(SFSDataType.SFS_ARRAY, array);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object decode(SFSSerializer serializer, SFSDataWrapper wrapper, FieldSet nested) throws ParseException {
+            Collection<Object> result = (Collection<Object>) newInstance(constructor);
+            Iterator<SFSDataWrapper> iterator = ((ISFSArray) wrapper.getObject()).iterator();
+            while (iterator.hasNext()) {
+                SFSDataWrapper item = iterator.next();
+                result.add((item.getTypeId() == SFSDataType.NULL) ? null : itemCodec.decode(serializer, item, nested));
+            }
+            return result;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object copy(SFSSerializer serializer, Object value) {
+            Collection<Object> result = (Collection<Object>) newInstance(constructor);
+            for (Object item : (Collection<?>) value) {
+                result.add((item == null) ? null : itemCodec.copy(serializer, item));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Map serialized as SFS_OBJECT
+     */
+    static final class MapCodec extends ValueCodec {
+        final Constructor<?> constructor;
+        final KeyCodec keyCodec;
+        final ValueCodec valueCodec;
+
+        MapCodec(Constructor<?> constructor, KeyCodec keyCodec, ValueCodec valueCodec) {
+            this.constructor = constructor;
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+        }
+
+        @Override
+        SFSDataWrapper encode(SFSSerializer serializer, Object value, FieldSet nested) {
+            ISFSObject object = new SFSObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                String key = keyCodec.toKey(entry.getKey());
+                if (entry.getValue() == null) {
+                    object.putNull(key);
+                } else {
+                    object.put(key, valueCodec.encode(serializer, entry.getValue(), nested));
+                }
+            }
+            return new SFSDataWrapper(SFSDataType.SFS_OBJECT, object);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object decode(SFSSerializer serializer, SFSDataWrapper wrapper, FieldSet nested) throws ParseException {
+            Map<Object, Object> result = (Map<Object, Object>) newInstance(constructor);
+            Iterator<Map.Entry<String, SFSDataWrapper>> iterator = ((ISFSObject) wrapper.getObject()).iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, SFSDataWrapper> entry = iterator.next();
+                SFSDataWrapper item = entry.getValue();
+                result.put(keyCodec.fromKey(entry.getKey()),
+                        (item.getTypeId() == SFSDataType.NULL) ? null : valueCodec.decode(serializer, item, nested));
+            }
+            return result;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object copy(SFSSerializer serializer, Object value) {
+            Map<Object, Object> result = (Map<Object, Object>) newInstance(constructor);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                result.put(entry.getKey(),
+                        (entry.getValue() == null) ? null : valueCodec.copy(serializer, entry.getValue()));
+            }
+            return result;
+        }
+    }
+
+    static final class DateCodec extends ValueCodec {
+        @Override
+        SFSDataWrapper encode(SFSSerializer serializer, Object value, FieldSet nested) {
+            return new SFSDataWrapper(SFSDataType.UTF_STRING, new SimpleDateFormat(DEFAULT_DATE_FORMAT).format(value));
+        }
+
+        @Override
+        Object decode(SFSSerializer serializer, SFSDataWrapper wrapper, FieldSet nested) throws ParseException {
+            return new SimpleDateFormat(DEFAULT_DATE_FORMAT).parse((String) wrapper.getObject());
+        }
+
+        @Override
+        Object copy(SFSSerializer serializer, Object value) {
+            return ((Date) value).clone();
+        }
+    }
+
+    static final class EnumCodec extends ValueCodec {
+        final Class<? extends Enum<?>> enumClass;
+
+        @SuppressWarnings("unchecked")
+        EnumCodec(Class<?> enumClass) {
+            this.enumClass = (Class<? extends Enum<?>>) enumClass;
+        }
+
+        @Override
+        SFSDataWrapper encode(SFSSerializer serializer, Object value, FieldSet nested) {
+            return new SFSDataWrapper(SFSDataType.UTF_STRING, ((Enum<?>) value).name());
+        }
+
+        @Override
+        Object decode(SFSSerializer serializer, SFSDataWrapper wrapper, FieldSet nested) {
+            return EnumUtil.fromWireValue(enumClass, wrapper.getObject());
+        }
+    }
+
+    static final class EntityCodec extends ValueCodec {
+        final Class<? extends TransportObject> entityClass;
+
+        @SuppressWarnings("unchecked")
+        EntityCodec(Class<?> entityClass) {
+            this.entityClass = (Class<? extends TransportObject>) entityClass;
+        }
+
+        @Override
+        SFSDataWrapper encode(SFSSerializer serializer, Object value, FieldSet nested) {
+            return new SFSDataWrapper(SFSDataType.SFS_OBJECT, serializer.serialize((TransportObject) value, nested));
+        }
+
+        @Override
+        Object decode(SFSSerializer serializer, SFSDataWrapper wrapper, FieldSet nested) {
+            return serializer.deserialize(entityClass, (ISFSObject) wrapper.getObject(), nested);
+        }
+
+        @Override
+        Object copy(SFSSerializer serializer, Object value) {
+            return serializer.copy((TransportObject) value);
+        }
+    }
+
+    static final class CustomCodec extends ValueCodec {
+        final TypeCodec<Object> typeCodec;
+
+        @SuppressWarnings("unchecked")
+        CustomCodec(TypeCodec<?> typeCodec) {
+            this.typeCodec = (TypeCodec<Object>) typeCodec;
+        }
+
+        @Override
+        SFSDataWrapper encode(SFSSerializer serializer, Object value, FieldSet nested) {
+            return typeCodec.encode(value);
+        }
+
+        @Override
+        Object decode(SFSSerializer serializer, SFSDataWrapper wrapper, FieldSet nested) {
+            return typeCodec.decode(wrapper);
+        }
+
+        @Override
+        Object copy(SFSSerializer serializer, Object value) {
+            return typeCodec.decode(typeCodec.encode(value));
+        }
+    }
+
+    /**
+     * Converter of the map keys to the SFSObject keys
+     */
+    abstract static class KeyCodec {
+
+        abstract String toKey(Object key);
+
+        abstract Object fromKey(String key);
+
+        static KeyCodec compile(Type type) {
+            if (!(type instanceof Class)) {
+                return null;
+            }
+            final Class<?> keyClass = (Class<?>) type;
+            final TypeCodec<?> typeCodec = TypeCodecs.find(keyClass);
+            if (typeCodec instanceof TypeCodecs.StringTypeCodec) {
+                return new KeyCodec() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    String toKey(Object key) {
+                        return (String) ((TypeCodec<Object>) typeCodec).encode(key).getObject();
+                    }
+
+                    @Override
+                    Object fromKey(String key) {
+                        return typeCodec.decode(new SFSDataWrapper(SFSDataType.UTF_STRING, key));
+                    }
+                };
+            }
+            final ValueType valueType = classify(keyClass);
+            switch (valueType) {
+                case STRING:
+                case LONG:
+                case INT:
+                case DOUBLE:
+                case FLOAT:
+                case BOOLEAN:
+                case SHORT:
+                case BYTE:
+                    return new KeyCodec() {
+                        @Override
+                        String toKey(Object key) {
+                            return String.valueOf(key);
+                        }
+
+                        @Override
+                        Object fromKey(String key) {
+                            return parse(valueType, key);
+                        }
+                    };
+                case ENUM:
+                    final EnumCodec enumCodec = new EnumCodec(keyClass);
+                    return new KeyCodec() {
+                        @Override
+                        String toKey(Object key) {
+                            return ((Enum) key).name();
+                        }
+
+                        @Override
+                        Object fromKey(String key) {
+                            return enumCodec.decode(null, new SFSDataWrapper(SFSDataType.UTF_STRING, key), null);
+                        }
+                    };
+            }
+            return null;
+        }
+
+        private static Object parse(ValueType valueType, String key) {
+            switch (valueType) {
+                case LONG:
+                    return Long.valueOf(key);
+                case INT:
+                    return Integer.valueOf(key);
+                case DOUBLE:
+                    return Double.valueOf(key);
+                case FLOAT:
+                    return Float.valueOf(key);
+                case BOOLEAN:
+                    return Boolean.valueOf(key);
+                case SHORT:
+                    return Short.valueOf(key);
+                case BYTE:
+                    return Byte.valueOf(key);
+            }
+            return key;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package me.smecsia.smartfox.tools.service;
+
+import com.smartfoxserver.v2.entities.User;
+import me.smecsia.smartfox.tools.error.AuthUnavailableException;
+import me.smecsia.smartfox.tools.error.UnauthorizedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Base of the asynchronous auth services. Bounds the count of the checks in flight (the excess checks fail
+ * immediately) and fails the checks which are not completed within the timeout. Such failures are reported
+ * as {@link AuthUnavailableException} and are not cached as the decisions.
+ * Implement {@link #doCheckAsync(User, AuthCallback)} completing the callback from the I/O thread.
+ *
+ * @author Ilya Sadykov
+ */
+public abstract class AbstractAsyncAuthService extends BasicAuthService implements AsyncAuthService {
+
+    public static final long DEFAULT_TIMEOUT = 5000;
+    public static final int DEFAULT_MAX_PENDING_CHECKS = 1000;
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "auth-timeout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final long timeoutMillis;
+    private final Semaphore pendingChecks;
+
+    protected AbstractAsyncAuthService() {
+        this(DEFAULT_TIMEOUT, DEFAULT_MAX_PENDING_CHECKS);
+    }
+
+    /**
+     * @param timeoutMillis    time to wait for the result of each check
+     * @param maxPendingChecks max count of the checks in flight
+     */
+    protected AbstractAsyncAuthService(long timeoutMillis, int maxPendingChecks) {
+        if (timeoutMillis <= 0 || maxPendingChecks <= 0) {
+            throw new IllegalArgumentException("Timeout and max count of the pending checks must be positive!");
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.pendingChecks = new Semaphore(maxPendingChecks);
+    }
+
+    /**
+     * Starts the check of the user. The callback must be completed exactly once.
+     *
+     * @param user     user to be checked
+     * @param callback receives the result of the check
+     */
+    protected abstract void doCheckAsync(User user, AuthCallback callback);
+
+    @Override
+    public final void checkAsync(User user, AuthCallback callback) {
+        if (!pendingChecks.tryAcquire()) {
+            callback.unauthorized(user, new AuthUnavailableException("Too many pending auth checks"));
+            return;
+        }
+        final PendingCheck check = new PendingCheck(user, callback);
+        check.timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                check.unauthorized(null, new AuthUnavailableException("Auth check timed out"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            doCheckAsync(user, check);
+        } catch (RuntimeException e) {
+            check.unauthorized(user, (e instanceof UnauthorizedException) ? (UnauthorizedException) e
+                    : new AuthUnavailableException(e));
+        }
+    }
+
+    /**
+     * Blocks until the asynchronous check is completed (used by the synchronous handlers)
+     */
+    @Override
+    public void check(User user) throws UnauthorizedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final UnauthorizedException[] result = new UnauthorizedException[1];
+        checkAsync(user, new AuthCallback() {
+            @Override
+            public void authorized(User user) {
+                done.countDown();
+            }
+
+            @Override
+            public void unauthorized(User user, UnauthorizedException error) {
+                result[0] = error;
+                done.countDown();
+            }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthUnavailableException(e);
+        }
+        if (result[0] != null) {
+            throw result[0];
+        }
+    }
+
+    /**
+     * @return count of the checks which can be started without the rejection
+     */
+    public int getAvailableChecks() {
+        return pendingChecks.availablePermits();
+    }
+
+    /**
+     * Completes the callback once, releasing the permit and cancelling the timeout
+     */
+    private final class PendingCheck implements AuthCallback {
+        private final AuthCallback callback;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final User user;
+        volatile ScheduledFuture<?> timeout;
+
+        PendingCheck(User user, AuthCallback callback) {
+            this.user = user;
+            this.callback = callback;
+        }
+
+        private boolean complete() {
+            if (!completed.compareAndSet(false, true)) {
+                return false;
+            }
+            ScheduledFuture<?> scheduled = timeout;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            pendingChecks.release();
+            return true;
+        }
+
+        @Override
+        public void authorized(User user) {
+            if (complete()) {
+                callback.authorized(this.user);
+            }
+        }
+
+        @Override
+        public void unauthorized(User user, UnauthorizedException error) {
+            if (complete()) {
+                callback.unauthorized(this.user, error);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package me.smecsia.smartfox.tools.service;
+
+import com.smartfoxserver.v2.entities.User;
+
+/**
+ * Auth service which checks the users without blocking the calling thread.
+ * The client request handlers secured by such service continue the handling when the check is completed.
+ *
+ * @author Ilya Sadykov
+ */
+public interface AsyncAuthService extends AuthService {
+
+    /**
+     * Starts the check of the user
+     *
+     * @param user     user to be checked
+     * @param callback receives the result of the check (may be called from any thread)
+     */
+    void checkAsync(User user, AuthCallback callback);
+}
@@ -0,0 +1,16 @@
+package me.smecsia.smartfox.tools.service;
+
+import com.smartfoxserver.v2.entities.User;
+import me.smecsia.smartfox.tools.error.UnauthorizedException;
+
+/**
+ * Receives the result of the asynchronous auth check. Exactly one of the methods is called once per check.
+ *
+ * @author Ilya Sadykov
+ */
+public interface AuthCallback {
+
+    void authorized(User user);
+
+    void unauthorized(User user, UnauthorizedException error);
+}
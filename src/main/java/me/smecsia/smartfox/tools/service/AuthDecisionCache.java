@@ -0,0 +1,179 @@
+package me.smecsia.smartfox.tools.service;
+
+import com.smartfoxserver.v2.entities.User;
+import me.smecsia.smartfox.tools.error.AuthUnavailableException;
+import me.smecsia.smartfox.tools.error.UnauthorizedException;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cache of the decisions of the auth service per user. Each handler applies its own TTL to the cached decisions.
+ * The size is bounded: when it's exceeded, the expired decisions are dropped first, then the arbitrary ones
+ * until a quarter of the capacity is free, so the eviction scan is amortized over the following inserts.
+ * Checks without the user (e.g. the server events) and the failed checks ({@link AuthUnavailableException})
+ * are never cached. The invalidation leaves a marker with its time instead of the decision, so a decision is
+ * cached only if its check was started after the invalidation and after the check of the cached decision.
+ *
+ * @author Ilya Sadykov
+ */
+class AuthDecisionCache {
+
+    static final class Decision {
+        final long checkedAt;
+        final String error;
+        final boolean invalidated;
+
+        Decision(long checkedAt, String error) {
+            this(checkedAt, error, false);
+        }
+
+        private Decision(long checkedAt, String error, boolean invalidated) {
+            this.checkedAt = checkedAt;
+            this.error = error;
+            this.invalidated = invalidated;
+        }
+
+        /**
+         * @return true if this entry must replace the current one (the newer one wins, the invalidation wins ties)
+         */
+        boolean supersedes(Decision current) {
+            long age = checkedAt - current.checkedAt;
+            return age > 0 || (age == 0 && invalidated);
+        }
+
+        /**
+         * @return the error to report to the caller or null if the user is authorized
+         */
+        UnauthorizedException toError() {
+            return (error != null) ? new UnauthorizedException(error) : null;
+        }
+    }
+
+    private final AuthService service;
+    private final ConcurrentMap<Integer, Decision> decisions = new ConcurrentHashMap<Integer, Decision>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private volatile int maxSize;
+    private volatile long maxTtl;
+
+    AuthDecisionCache(AuthService service) {
+        this.service = service;
+    }
+
+    /**
+     * Extends the bounds of the cache to satisfy the handler settings
+     */
+    synchronized void configure(long ttlMillis, int size) {
+        maxTtl = Math.max(maxTtl, TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+        maxSize = Math.max(maxSize, size);
+    }
+
+    /**
+     * Checks the user using the cached decision if it's not older than the ttl
+     *
+     * @param user     user to be checked
+     * @param ttlNanos time to live of the decisions
+     */
+    void check(User user, long ttlNanos) throws UnauthorizedException {
+        Decision decision = lookup(user, ttlNanos);
+        if (decision == null) {
+            final long checkedAt = System.nanoTime();
+            UnauthorizedException error = null;
+            try {
+                service.check(user);
+            } catch (AuthUnavailableException e) {
+                throw e;
+            } catch (UnauthorizedException e) {
+                error = e;
+            }
+            decision = record(user, checkedAt, error);
+        }
+        if (decision.error != null) {
+            throw new UnauthorizedException(decision.error);
+        }
+    }
+
+    /**
+     * @return the cached decision if it's not older than the ttl or null
+     */
+    Decision lookup(User user, long ttlNanos) {
+        if (user == null) {
+            return null;
+        }
+        Decision decision = decisions.get(user.getId());
+        return (decision != null && !decision.invalidated && System.nanoTime() - decision.checkedAt < ttlNanos)
+                ? decision : null;
+    }
+
+    /**
+     * Caches the decision made by the check started at the given time unless the user has been invalidated
+     * or checked again since then (decisions without the user aren't cached)
+     *
+     * @param error the error reported by the check or null if the user is authorized
+     */
+    Decision record(User user, long checkedAt, UnauthorizedException error) {
+        Decision decision = new Decision(checkedAt, (error != null) ? error.getMessage() : null);
+        if (user == null) {
+            return decision;
+        }
+        if (store(user.getId(), decision) && decisions.size() > maxSize && evicting.compareAndSet(false, true)) {
+            try {
+                evict(System.nanoTime());
+            } finally {
+                evicting.set(false);
+            }
+        }
+        return decision;
+    }
+
+    void invalidate(User user) {
+        if (user != null) {
+            store(user.getId(), new Decision(System.nanoTime(), null, true));
+        }
+    }
+
+    int size() {
+        return decisions.size();
+    }
+
+    /**
+     * @return true if the entry is stored, false if a newer one is already cached
+     */
+    private boolean store(Integer userId, Decision entry) {
+        for (; ; ) {
+            Decision current = decisions.get(userId);
+            if (current == null) {
+                if (decisions.putIfAbsent(userId, entry) == null) {
+                    return true;
+                }
+            } else if (!entry.supersedes(current)) {
+                return false;
+            } else if (decisions.replace(userId, current, entry)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drops the expired entries, then the arbitrary decisions. The invalidation markers are kept until they expire:
+     * the decisions of the checks started before them would be expired by then too.
+     */
+    private void evict(long now) {
+        for (Iterator<Decision> it = decisions.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().checkedAt >= maxTtl) {
+                it.remove();
+            }
+        }
+        final int limit = maxSize;
+        int excess = decisions.size() - (limit - Math.max(1, limit >>> 2));
+        for (Iterator<Decision> it = decisions.values().iterator(); it.hasNext() && excess > 0; ) {
+            if (!it.next().invalidated) {
+                it.remove();
+                --excess;
+            }
+        }
+    }
+}
@@ -4,11 +4,18 @@ import com.smartfoxserver.v2.entities.User;
 import me.smecsia.smartfox.tools.annotations.Security;
 import me.smecsia.smartfox.tools.common.BasicHandler;
 import me.smecsia.smartfox.tools.common.BasicService;
+import me.smecsia.smartfox.tools.error.AuthUnavailableException;
 import me.smecsia.smartfox.tools.error.MetadataException;
 import me.smecsia.smartfox.tools.error.UnauthorizedException;
+import me.smecsia.smartfox.tools.util.ClassRegistry;
 
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static me.smecsia.smartfox.tools.util.ClassUtil.findAnnotationInClassHierarchy;
 
 /**
  *
@@ -18,28 +25,247 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class BasicAuthService extends BasicService implements AuthService {
 
-    private static class AuthStrategy {
-        public AuthService service;
-        public Boolean authRequired;
-    }
+    /**
+     * Precomputed authentication policy of the handler class
+     */
+    public static final class AuthStrategy {
+        private final AuthService service;
+        private final boolean authRequired;
+        private final AuthDecisionCache decisions;
+        private final long ttlNanos;
+        private final long[] permissions;
 
-    private static final Map<Class<? extends BasicHandler>, AuthStrategy> authCache =
-            new ConcurrentHashMap<Class<? extends BasicHandler>, AuthStrategy>();
+        private AuthStrategy(AuthService service, boolean authRequired) {
+            this(service, authRequired, null, 0, null);
+        }
 
-    public static void checkAuthIfRequired(BasicHandler handler, User user) {
-        if (!authCache.containsKey(handler.getClass())) {
-            Security security = handler.getClass().getAnnotation(Security.class);
-            AuthStrategy authStrategy = new AuthStrategy();
+        private AuthStrategy(AuthService service, boolean authRequired, AuthDecisionCache decisions, long ttlMillis,
+                             long[] permissions) {
+            this.service = service;
+            this.authRequired = authRequired;
+            this.decisions = decisions;
+            this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+            this.permissions = permissions;
+        }
+
+        public AuthService getService() {
+            return service;
+        }
+
+        public boolean isAuthRequired() {
+            return authRequired;
+        }
+
+        /**
+         * @return true if the auth check should be performed by {@link #checkAsync(User, AuthCallback)}
+         */
+        public boolean isAsync() {
+            return authRequired && service instanceof AsyncAuthService;
+        }
+
+        /**
+         * Checks the user if the authentication is required
+         *
+         * @param user user to be checked
+         * @throws UnauthorizedException if the user is not authorized
+         */
+        public void check(User user) throws UnauthorizedException {
+            if (authRequired) {
+                if (decisions != null) {
+                    decisions.check(user, ttlNanos);
+                } else {
+                    service.check(user);
+                }
+            }
+            checkPermissions(user);
+        }
+
+        /**
+         * Checks that the user is granted all the permissions required by the handler
+         *
+         * @param user user to be checked
+         * @throws UnauthorizedException if some permission is not granted
+         */
+        public void checkPermissions(User user) throws UnauthorizedException {
+            if (permissions != null && (user == null || !Permissions.isGranted(user, permissions))) {
+                throw new UnauthorizedException("User is not granted the permissions required by the handler");
+            }
+        }
+
+        /**
+         * Checks the user asynchronously if the service supports it (synchronously otherwise).
+         * Cached decisions complete the callback immediately. Failed checks are reported uncached
+         * as {@link AuthUnavailableException}.
+         *
+         * @param user     user to be checked
+         * @param callback receives the result of the check
+         */
+        public void checkAsync(final User user, final AuthCallback callback) {
+            if (isAsync() && permissions != null) {
+                checkAuthAsync(user, new AuthCallback() {
+                    @Override
+                    public void authorized(User user) {
+                        try {
+                            checkPermissions(user);
+                        } catch (UnauthorizedException e) {
+                            callback.unauthorized(user, e);
+                            return;
+                        }
+                        callback.authorized(user);
+                    }
+
+                    @Override
+                    public void unauthorized(User user, UnauthorizedException error) {
+                        callback.unauthorized(user, error);
+                    }
+                });
+            } else {
+                checkAuthAsync(user, callback);
+            }
+        }
+
+        private void checkAuthAsync(final User user, final AuthCallback callback) {
+            if (!isAsync()) {
+                try {
+                    check(user);
+                } catch (UnauthorizedException e) {
+                    callback.unauthorized(user, e);
+                    return;
+                }
+                callback.authorized(user);
+                return;
+            }
+            if (decisions == null) {
+                ((AsyncAuthService) service).checkAsync(user, callback);
+                return;
+            }
+            AuthDecisionCache.Decision decision = decisions.lookup(user, ttlNanos);
+            if (decision != null) {
+                if (decision.error != null) {
+                    callback.unauthorized(user, decision.toError());
+                } else {
+                    callback.authorized(user);
+                }
+                return;
+            }
+            final long checkedAt = System.nanoTime();
+            ((AsyncAuthService) service).checkAsync(user, new AuthCallback() {
+                @Override
+                public void authorized(User user) {
+                    decisions.record(user, checkedAt, null);
+                    callback.authorized(user);
+                }
+
+                @Override
+                public void unauthorized(User user, UnauthorizedException error) {
+                    if (!(error instanceof AuthUnavailableException)) {
+                        decisions.record(user, checkedAt, error);
+                    }
+                    callback.unauthorized(user, error);
+                }
+            });
+        }
+    }
+
+    /**
+     * Single shared instance of each auth service type
+     */
+    private static final ClassRegistry<AuthService> services = new ClassRegistry<AuthService>(false) {
+        @Override
+        protected AuthService computeValue(Class<?> serviceClass) {
             try {
-                authStrategy.service = (security != null) ? security.authService().newInstance() : new BasicAuthService();
-                authStrategy.authRequired = (security != null) && security.authRequired();
-                authCache.put(handler.getClass(), authStrategy);
+                return (AuthService) serviceClass.newInstance();
             } catch (Exception e) {
                 throw new MetadataException(e);
             }
         }
-        if (authCache.containsKey(handler.getClass()) && authCache.get(handler.getClass()).authRequired) {
-            authCache.get(handler.getClass()).service.check(user);
+    };
+
+    /**
+     * Cached decisions of each auth service type (created only for the services used with the caching)
+     */
+    private static final ConcurrentMap<Class<?>, AuthDecisionCache> decisionCaches =
+            new ConcurrentHashMap<Class<?>, AuthDecisionCache>();
+
+    private static final ClassRegistry<AuthStrategy> authCache = new ClassRegistry<AuthStrategy>(false) {
+        @Override
+        protected AuthStrategy computeValue(Class<?> handlerClass) {
+            Security security = findAnnotationInClassHierarchy(handlerClass, Security.class);
+            if (security == null) {
+                return new AuthStrategy(services.get(BasicAuthService.class), false);
+            }
+            AuthService service = services.get(security.authService());
+            long[] permissions = (security.permissions().length > 0)
+                    ? Permissions.compile(Arrays.asList(security.permissions())) : null;
+            if (!security.authRequired() || security.cacheTtl() <= 0) {
+                return new AuthStrategy(service, security.authRequired(), null, 0, permissions);
+            }
+            if (security.cacheSize() <= 0) {
+                throw new MetadataException("Auth cache size of the handler " + handlerClass.getName()
+                        + " must be positive!");
+            }
+            AuthDecisionCache decisions = getDecisionCache(security.authService(), service);
+            decisions.configure(security.cacheTtl(), security.cacheSize());
+            return new AuthStrategy(service, true, decisions, security.cacheTtl(), permissions);
+        }
+    };
+
+    private static AuthDecisionCache getDecisionCache(Class<?> serviceClass, AuthService service) {
+        AuthDecisionCache decisions = decisionCaches.get(serviceClass);
+        if (decisions == null) {
+            AuthDecisionCache existing = decisionCaches.putIfAbsent(serviceClass,
+                    decisions = new AuthDecisionCache(service));
+            if (existing != null) {
+                decisions = existing;
+            }
+        }
+        return decisions;
+    }
+
+    /**
+     * Returns the auth strategy of the handler class defined by its (or its superclass) {@link Security} annotation.
+     * Handlers resolve it once when constructed.
+     *
+     * @param handlerClass class of the handler
+     * @return auth strategy
+     */
+    public static AuthStrategy getAuthStrategy(Class<?> handlerClass) {
+        return authCache.get(handlerClass);
+    }
+
+    public static void checkAuthIfRequired(BasicHandler handler, User user) {
+        getAuthStrategy(handler.getClass()).check(user);
+    }
+
+    /**
+     * Releases the auth strategies and services of all the handlers loaded by the classloader.
+     * Should be called when the extension is destroyed to let its classloader be unloaded.
+     *
+     * @param classLoader classloader of the extension
+     */
+    public static void invalidate(ClassLoader classLoader) {
+        authCache.invalidate(classLoader);
+        services.invalidate(classLoader);
+        for (Iterator<Class<?>> it = decisionCaches.keySet().iterator(); it.hasNext(); ) {
+            for (ClassLoader loader = it.next().getClassLoader(); loader != null; loader = loader.getParent()) {
+                if (loader == classLoader) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the cached auth decisions and permissions of the user
+     * (e.g. when the user's roles are changed or the user is logged out)
+     *
+     * @param user user
+     */
+    public static void invalidate(User user) {
+        Permissions.invalidate(user);
+        for (AuthDecisionCache decisions : decisionCaches.values()) {
+            decisions.invalidate(user);
         }
     }
 
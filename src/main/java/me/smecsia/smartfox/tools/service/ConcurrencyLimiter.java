@@ -0,0 +1,198 @@
+package me.smecsia.smartfox.tools.service;
+
+import me.smecsia.smartfox.tools.annotations.HandlerPriority;
+import me.smecsia.smartfox.tools.util.ClassRegistry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static me.smecsia.smartfox.tools.util.ClassUtil.findAnnotationInClassHierarchy;
+
+/**
+ * Adaptive limit of the requests handled concurrently by all the client request handlers (AIMD):
+ * the limit grows by one per "round" of the requests completed within the target latency and is decreased
+ * multiplicatively (at most once per target latency) when the requests get slower.
+ * Requests over the part of the limit available to their {@link HandlerPriority} are shed.
+ * The limiter is disabled until the global instance is set by {@link #setGlobal(ConcurrencyLimiter)}.
+ *
+ * @author Ilya Sadykov
+ */
+public class ConcurrencyLimiter {
+
+    private static final double BACKOFF = 0.9;
+
+    private static volatile ConcurrencyLimiter global;
+
+    private static final ClassRegistry<HandlerPriority.Level> priorities =
+            new ClassRegistry<HandlerPriority.Level>(false) {
+                @Override
+                protected HandlerPriority.Level computeValue(Class<?> handlerClass) {
+                    HandlerPriority priority = findAnnotationInClassHierarchy(handlerClass, HandlerPriority.class);
+                    return (priority != null) ? priority.value() : HandlerPriority.Level.NORMAL;
+                }
+            };
+
+    /**
+     * Slot of the admitted request, must be released once when the request is completed or abandoned
+     */
+    public static class Permit {
+        /**
+         * Permit of the requests admitted when the limiter is disabled
+         */
+        public static final Permit NONE = new Permit(null);
+
+        private final ConcurrencyLimiter limiter;
+        private final long admittedAt;
+
+        private Permit(ConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+            this.admittedAt = (limiter != null) ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Releases the slot of the handled request adjusting the limit by its latency
+         */
+        public void complete() {
+            if (limiter != null) {
+                limiter.release(System.nanoTime() - admittedAt);
+            }
+        }
+
+        /**
+         * Releases the slot of the request which was not handled (e.g. unauthorized)
+         */
+        public void release() {
+            if (limiter != null) {
+                limiter.release(-1);
+            }
+        }
+    }
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final long targetLatencyNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits;
+    private final AtomicLong lastDecrease = new AtomicLong(System.nanoTime());
+    private final AtomicLong shed = new AtomicLong();
+
+    /**
+     * @param initialLimit        initial count of the concurrent requests
+     * @param minLimit            min count of the concurrent requests
+     * @param maxLimit            max count of the concurrent requests
+     * @param targetLatencyMillis latency of the requests above which the limit is decreased
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyMillis) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit || targetLatencyMillis <= 0) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < min <= initial <= max, "
+                    + "target latency must be positive!");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(initialLimit));
+    }
+
+    /**
+     * Sets the limiter applied to all the client request handlers
+     *
+     * @param limiter limiter or null to disable the limiting
+     */
+    public static void setGlobal(ConcurrencyLimiter limiter) {
+        global = limiter;
+    }
+
+    public static ConcurrencyLimiter getGlobal() {
+        return global;
+    }
+
+    /**
+     * @param handlerClass class of the handler
+     * @return priority of the handler class
+     */
+    public static HandlerPriority.Level getPriority(Class<?> handlerClass) {
+        return priorities.get(handlerClass);
+    }
+
+    /**
+     * Admits the request to the global limiter
+     *
+     * @param priority priority of the handler
+     * @return permit or null if the request should be shed
+     */
+    public static Permit admit(HandlerPriority.Level priority) {
+        ConcurrencyLimiter limiter = global;
+        return (limiter != null) ? limiter.acquire(priority) : Permit.NONE;
+    }
+
+    /**
+     * Acquires the slot for the request
+     *
+     * @param priority priority of the handler
+     * @return permit or null if the request should be shed
+     */
+    public Permit acquire(HandlerPriority.Level priority) {
+        final double allowed = getLimit() * priority.getShare();
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= allowed) {
+                shed.incrementAndGet();
+                return null;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return new Permit(this);
+    }
+
+    private void release(long latencyNanos) {
+        final int current = inFlight.getAndDecrement();
+        if (latencyNanos < 0) {
+            return;
+        }
+        if (latencyNanos > targetLatencyNanos) {
+            final long now = System.nanoTime();
+            final long last = lastDecrease.get();
+            if (now - last >= targetLatencyNanos && lastDecrease.compareAndSet(last, now)) {
+                updateLimit(true);
+            }
+        } else if (current * 2 >= getLimit()) {
+            // grow only when the limit is actually used
+            updateLimit(false);
+        }
+    }
+
+    private void updateLimit(boolean decrease) {
+        for (; ; ) {
+            final long bits = limitBits.get();
+            final double limit = Double.longBitsToDouble(bits);
+            final double updated = decrease
+                    ? Math.max(minLimit, limit * BACKOFF) : Math.min(maxLimit, limit + 1 / limit);
+            if (updated == limit || limitBits.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return current limit of the concurrent requests
+     */
+    public double getLimit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    /**
+     * @return count of the requests being handled
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return count of the shed requests
+     */
+    public long getShed() {
+        return shed.get();
+    }
+}
@@ -0,0 +1,360 @@
+package me.smecsia.smartfox.tools.service;
+
+import me.smecsia.smartfox.tools.annotations.Offload;
+import me.smecsia.smartfox.tools.error.MetadataException;
+import me.smecsia.smartfox.tools.util.ClassRegistry;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static me.smecsia.smartfox.tools.util.ClassUtil.findAnnotationInClassHierarchy;
+
+/**
+ * Named executors of the handlers annotated with {@link Offload}. Executors should be registered when the
+ * extension is initialized and shut down by {@link #shutdown()} when it's destroyed.
+ * The {@link #DEFAULT} executor is created on demand unless it's registered explicitly.
+ *
+ * @author Ilya Sadykov
+ */
+public final class HandlerExecutors {
+
+    public static final String DEFAULT = "default";
+
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    private static final ConcurrentMap<String, Executor> executors = new ConcurrentHashMap<String, Executor>();
+
+    private static final ConcurrentMap<String, SerialLanes> lanes = new ConcurrentHashMap<String, SerialLanes>();
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            daemonThreads("handler-timeout"));
+
+    /**
+     * Marks the handlers which are not offloaded (the registry does not hold the null values)
+     */
+    private static final Dispatcher INLINE = new Dispatcher();
+
+    private static final ClassRegistry<Dispatcher> dispatchers = new ClassRegistry<Dispatcher>(false) {
+        @Override
+        protected Dispatcher computeValue(Class<?> handlerClass) {
+            Offload offload = findAnnotationInClassHierarchy(handlerClass, Offload.class);
+            return (offload != null) ? new Dispatcher(offload) : INLINE;
+        }
+    };
+
+    private HandlerExecutors() {
+    }
+
+    /**
+     * Dispatches the handling according to the {@link Offload} settings of the handler class
+     */
+    public static final class Dispatcher {
+        private final String executorName;
+        private final long timeoutMillis;
+        private final Offload.Rejection rejection;
+        private final Offload.Lane lane;
+
+        private Dispatcher() {
+            this.executorName = null;
+            this.timeoutMillis = 0;
+            this.rejection = null;
+            this.lane = Offload.Lane.NONE;
+        }
+
+        private Dispatcher(Offload offload) {
+            this.executorName = offload.executor();
+            this.timeoutMillis = offload.timeout();
+            this.rejection = offload.onRejected();
+            this.lane = offload.lane();
+        }
+
+        /**
+         * @return key kind of the ordered execution
+         */
+        public Offload.Lane getLane() {
+            return lane;
+        }
+
+        /**
+         * Executes the task after the previously dispatched tasks of the same key
+         *
+         * @param key  key of the lane (user or room), the task is not ordered if it's null
+         * @param task handling task
+         * @throws RejectedExecutionException if the lanes are saturated or the task is not ordered and
+         *                                    the executor rejects it
+         */
+        public void dispatch(Object key, Runnable task) throws RejectedExecutionException {
+            if (key == null || lane == Offload.Lane.NONE) {
+                dispatch(task);
+            } else {
+                getLanes(executorName).execute(key, (timeoutMillis > 0) ? new TimedTask(task, timeoutMillis) : task);
+            }
+        }
+
+        /**
+         * Executes the task in the executor of the handler
+         *
+         * @param task handling task
+         * @throws RejectedExecutionException if the executor is saturated and the handler rejects the excess
+         */
+        public void dispatch(Runnable task) throws RejectedExecutionException {
+            Runnable command = (timeoutMillis > 0) ? new TimedTask(task, timeoutMillis) : task;
+            try {
+                getExecutor(executorName).execute(command);
+            } catch (RejectedExecutionException e) {
+                if (rejection != Offload.Rejection.CALLER_RUNS) {
+                    throw e;
+                }
+                command.run();
+            }
+        }
+
+        /**
+         * Executes the task in the executor of the handler, never in the calling thread
+         *
+         * @param task handling task
+         * @throws RejectedExecutionException if the executor is saturated (regardless of the rejection policy)
+         */
+        public void submit(Runnable task) throws RejectedExecutionException {
+            getExecutor(executorName).execute((timeoutMillis > 0) ? new TimedTask(task, timeoutMillis) : task);
+        }
+    }
+
+    /**
+     * Returns the dispatcher of the handler class
+     *
+     * @param handlerClass class of the handler
+     * @return dispatcher or null if the handler is not annotated with {@link Offload}
+     */
+    public static Dispatcher getDispatcher(Class<?> handlerClass) {
+        Dispatcher dispatcher = dispatchers.get(handlerClass);
+        return (dispatcher != INLINE) ? dispatcher : null;
+    }
+
+    /**
+     * Registers the named executor (replacing the previous one)
+     *
+     * @param name     name of the executor
+     * @param executor executor (must throw {@link RejectedExecutionException} when it's saturated)
+     */
+    public static void register(String name, Executor executor) {
+        executors.put(name, executor);
+    }
+
+    /**
+     * @param name name of the executor
+     * @return registered executor
+     */
+    public static Executor getExecutor(String name) {
+        Executor executor = executors.get(name);
+        if (executor == null) {
+            if (!DEFAULT.equals(name)) {
+                throw new MetadataException("Handler executor '" + name + "' is not registered!");
+            }
+            Executor created = newDefaultExecutor();
+            executor = executors.putIfAbsent(DEFAULT, created);
+            if (executor == null) {
+                executor = created;
+            } else if (created instanceof ExecutorService) {
+                ((ExecutorService) created).shutdown();
+            }
+        }
+        return executor;
+    }
+
+    private static SerialLanes getLanes(String executorName) {
+        SerialLanes result = lanes.get(executorName);
+        if (result == null) {
+            SerialLanes created = new SerialLanes(getExecutor(executorName), DEFAULT_QUEUE_SIZE,
+                    SerialLanes.DEFAULT_LANE_CAPACITY);
+            result = lanes.putIfAbsent(executorName, created);
+            if (result == null) {
+                result = created;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Shuts down all the registered executors, the handlers of the destroyed extension should not be dispatched
+     */
+    public static void shutdown() {
+        for (Executor executor : executors.values()) {
+            if (executor instanceof ExecutorService) {
+                ((ExecutorService) executor).shutdown();
+            }
+        }
+        executors.clear();
+        lanes.clear();
+        dispatchers.clear();
+    }
+
+    /**
+     * Creates the pool of the fixed size which rejects the tasks when its queue is full
+     *
+     * @param threads   count of the threads
+     * @param queueSize max count of the waiting tasks
+     * @return executor
+     */
+    public static ExecutorService newBoundedExecutor(int threads, int queueSize) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), daemonThreads("handler"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Creates the executor starting the virtual thread per task (if the JVM supports them)
+     *
+     * @param maxPending max count of the tasks in flight, the excess is rejected
+     * @return executor or null if the virtual threads are not supported (or are the disabled preview feature)
+     */
+    public static ExecutorService newVirtualThreadExecutor(int maxPending) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new BoundedExecutor((ExecutorService) factory.invoke(null), maxPending);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newDefaultExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors() * 4;
+        ExecutorService executor = newVirtualThreadExecutor(threads + DEFAULT_QUEUE_SIZE);
+        return (executor != null) ? executor : newBoundedExecutor(threads, DEFAULT_QUEUE_SIZE);
+    }
+
+    private static ThreadFactory daemonThreads(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Interrupts the handling thread if the task is not completed within the timeout.
+     * The interrupt is delivered under the lock, so it never lands after the task is completed.
+     */
+    private static final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long timeoutMillis;
+        private boolean running;
+
+        TimedTask(Runnable task, long timeoutMillis) {
+            this.task = task;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void run() {
+            final Thread thread = Thread.currentThread();
+            synchronized (this) {
+                running = true;
+            }
+            ScheduledFuture<?> timeout = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (TimedTask.this) {
+                        if (running) {
+                            running = false;
+                            thread.interrupt();
+                        }
+                    }
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            try {
+                task.run();
+            } finally {
+                timeout.cancel(false);
+                synchronized (this) {
+                    if (running) {
+                        running = false;
+                    } else {
+                        // the thread was interrupted by the timeout, do not leak the flag to the next task
+                        Thread.interrupted();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Rejects the tasks when the count of the tasks in flight exceeds the limit
+     */
+    private static final class BoundedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        BoundedExecutor(ExecutorService delegate, int maxPending) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxPending);
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException("Too many pending handler tasks");
+            }
+            try {
+                delegate.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            command.run();
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
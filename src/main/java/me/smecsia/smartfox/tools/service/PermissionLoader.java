@@ -0,0 +1,16 @@
+package me.smecsia.smartfox.tools.service;
+
+import com.smartfoxserver.v2.entities.User;
+
+import java.util.Collection;
+
+/**
+ * Loads the names of the permissions granted to the user (e.g. from the roles stored in the DB).
+ * Called once per user session, the result is cached until {@link Permissions#invalidate(User)}.
+ *
+ * @author Ilya Sadykov
+ */
+public interface PermissionLoader {
+
+    Collection<String> loadPermissions(User user);
+}
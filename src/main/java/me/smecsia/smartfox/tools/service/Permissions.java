@@ -0,0 +1,146 @@
+package me.smecsia.smartfox.tools.service;
+
+import com.smartfoxserver.v2.entities.User;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Permissions compiled into the bitsets. Each permission name gets its own bit when it's first seen, so the
+ * check of the required permissions is a single AND per 64 permissions.
+ * The bitset of the permissions granted to the user is loaded once by the {@link PermissionLoader}
+ * and cached in the user properties. The invalidation detaches the cached holder from the user,
+ * so the permissions loaded concurrently with it are never cached.
+ *
+ * @author Ilya Sadykov
+ */
+public final class Permissions {
+
+    static final String USER_PROPERTY = Permissions.class.getName() + ".granted";
+
+    private static final long[] EMPTY = new long[0];
+
+    private static final Map<String, Integer> bits = new ConcurrentHashMap<String, Integer>();
+
+    private static final Object grantLock = new Object();
+
+    private static volatile PermissionLoader loader = new PermissionLoader() {
+        @Override
+        public Collection<String> loadPermissions(User user) {
+            return Collections.emptyList();
+        }
+    };
+
+    /**
+     * Holder of the permissions granted to the user (the generation of the user's grant)
+     */
+    private static final class Grant {
+        volatile long[] granted;
+    }
+
+    private Permissions() {
+    }
+
+    /**
+     * Sets the loader of the permissions granted to the users (by default no permissions are granted)
+     *
+     * @param permissionLoader loader
+     */
+    public static void setLoader(PermissionLoader permissionLoader) {
+        if (permissionLoader == null) {
+            throw new IllegalArgumentException("Permission loader cannot be null!");
+        }
+        loader = permissionLoader;
+    }
+
+    /**
+     * Compiles the permissions into the bitset
+     *
+     * @param permissions names of the permissions
+     * @return bitset
+     */
+    public static long[] compile(Collection<String> permissions) {
+        long[] mask = EMPTY;
+        for (String permission : permissions) {
+            int bit = bitOf(permission);
+            if ((bit >>> 6) >= mask.length) {
+                mask = Arrays.copyOf(mask, (bit >>> 6) + 1);
+            }
+            mask[bit >>> 6] |= 1L << bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the bitset of the permissions granted to the user, loading it if it's not cached yet
+     *
+     * @param user user
+     * @return bitset of the granted permissions
+     */
+    public static long[] getGranted(User user) {
+        Grant grant = (Grant) user.getProperty(USER_PROPERTY);
+        if (grant == null) {
+            grant = attachGrant(user);
+        }
+        long[] granted = grant.granted;
+        if (granted == null) {
+            Collection<String> permissions = loader.loadPermissions(user);
+            granted = (permissions != null) ? compile(permissions) : EMPTY;
+            // stored into the detached holder if the user has been invalidated meanwhile
+            grant.granted = granted;
+        }
+        return granted;
+    }
+
+    /**
+     * @return true if the user is granted all the required permissions
+     */
+    public static boolean isGranted(User user, long[] required) {
+        long[] granted = getGranted(user);
+        for (int i = 0; i < required.length; ++i) {
+            if (required[i] != 0 && (i >= granted.length || (granted[i] & required[i]) != required[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops the cached permissions of the user (e.g. when the user's roles are changed)
+     *
+     * @param user user
+     */
+    public static void invalidate(User user) {
+        synchronized (grantLock) {
+            user.removeProperty(USER_PROPERTY);
+        }
+    }
+
+    private static Grant attachGrant(User user) {
+        synchronized (grantLock) {
+            Grant grant = (Grant) user.getProperty(USER_PROPERTY);
+            if (grant == null) {
+                grant = new Grant();
+                user.setProperty(USER_PROPERTY, grant);
+            }
+            return grant;
+        }
+    }
+
+    private static int bitOf(String permission) {
+        Integer bit = bits.get(permission);
+        if (bit == null) {
+            synchronized (bits) {
+                bit = bits.get(permission);
+                if (bit == null) {
+                    bit = bits.size();
+                    bits.put(permission, bit);
+                }
+            }
+        }
+        return bit;
+    }
+}
@@ -0,0 +1,172 @@
+package me.smecsia.smartfox.tools.service;
+
+import com.smartfoxserver.v2.entities.User;
+import me.smecsia.smartfox.tools.annotations.RateLimit;
+import me.smecsia.smartfox.tools.error.MetadataException;
+import me.smecsia.smartfox.tools.util.ClassRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static me.smecsia.smartfox.tools.util.ClassUtil.findAnnotationInClassHierarchy;
+
+/**
+ * Per-user rate limit of the handler defined by its {@link RateLimit} annotation.
+ * Implemented as the token bucket refilled lazily (GCRA): the state of the user is the single AtomicLong
+ * holding the theoretical arrival time of the next request, updated by CAS. The state is kept in the user
+ * properties, so it's released with the user on disconnect.
+ *
+ * @author Ilya Sadykov
+ */
+public final class RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
+
+    /**
+     * Marks the handlers which are not limited (the registry does not hold the null values)
+     */
+    private static final RateLimiter UNLIMITED = new RateLimiter();
+
+    private static final ClassRegistry<RateLimiter> limiters = new ClassRegistry<RateLimiter>(false) {
+        @Override
+        protected RateLimiter computeValue(Class<?> handlerClass) {
+            RateLimit rateLimit = findAnnotationInClassHierarchy(handlerClass, RateLimit.class);
+            return (rateLimit != null) ? new RateLimiter(handlerClass, rateLimit) : UNLIMITED;
+        }
+    };
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "rate-limit-delay");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final String name;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final RateLimit.Action action;
+    private final long maxDelayNanos;
+
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+
+    private RateLimiter() {
+        this.name = null;
+        this.intervalNanos = 0;
+        this.burstNanos = 0;
+        this.action = null;
+        this.maxDelayNanos = 0;
+    }
+
+    private RateLimiter(Class<?> handlerClass, RateLimit rateLimit) {
+        if (rateLimit.perSecond() <= 0 || rateLimit.burst() < 0) {
+            throw new MetadataException("Rate limit of the handler " + handlerClass.getName()
+                    + " must be positive!");
+        }
+        this.name = handlerClass.getName();
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rateLimit.perSecond()));
+        int burst = (rateLimit.burst() > 0) ? rateLimit.burst() : (int) Math.max(1, Math.ceil(rateLimit.perSecond()));
+        this.burstNanos = intervalNanos * burst;
+        this.action = rateLimit.action();
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(rateLimit.maxDelay());
+    }
+
+    /**
+     * Returns the rate limiter of the handler class
+     *
+     * @param handlerClass class of the handler
+     * @return rate limiter or null if the handler is not annotated with {@link RateLimit}
+     */
+    public static RateLimiter get(Class<?> handlerClass) {
+        RateLimiter limiter = limiters.get(handlerClass);
+        return (limiter != UNLIMITED) ? limiter : null;
+    }
+
+    /**
+     * Checks the rate of the user's requests. If the request is over the limit, applies the action:
+     * the delayed request is handled by the given task later.
+     *
+     * @param user    user sending the request
+     * @param retry handling of the delayed request
+     * @return true if the request should be handled now
+     */
+    public boolean tryAcquire(User user, Runnable retry) {
+        if (user == null) {
+            return true;
+        }
+        AtomicLong arrival = getArrival(user);
+        for (; ; ) {
+            final long now = System.nanoTime();
+            final long tat = arrival.get();
+            final long next = ((tat - now > 0) ? tat : now) + intervalNanos;
+            final long wait = next - now - burstNanos;
+            if (wait <= 0) {
+                if (arrival.compareAndSet(tat, next)) {
+                    allowed.incrementAndGet();
+                    return true;
+                }
+            } else if (action == RateLimit.Action.DELAY && wait <= maxDelayNanos) {
+                if (arrival.compareAndSet(tat, next)) {
+                    delayed.incrementAndGet();
+                    timer.schedule(retry, wait, TimeUnit.NANOSECONDS);
+                    return false;
+                }
+            } else {
+                if (action == RateLimit.Action.REJECT) {
+                    rejected.incrementAndGet();
+                    // rejections are counted, logging each one would flood the log under the abuse
+                    logger.debug("Request of the user {} to {} is rejected: rate limit exceeded", user.getName(), name);
+                } else {
+                    dropped.incrementAndGet();
+                }
+                return false;
+            }
+        }
+    }
+
+    private AtomicLong getArrival(User user) {
+        AtomicLong arrival = (AtomicLong) user.getProperty(this);
+        if (arrival == null) {
+            synchronized (user) {
+                arrival = (AtomicLong) user.getProperty(this);
+                if (arrival == null) {
+                    arrival = new AtomicLong(System.nanoTime());
+                    user.setProperty(this, arrival);
+                }
+            }
+        }
+        return arrival;
+    }
+
+    public long getAllowed() {
+        return allowed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getDelayed() {
+        return delayed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimiter[" + name + "]";
+    }
+}
@@ -0,0 +1,225 @@
+package me.smecsia.smartfox.tools.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the tasks of the same key (e.g. user or room) one by one in the order of their submission,
+ * while the tasks of the different keys run in parallel on the underlying executor.
+ * Each key has its own lock-free lane which is drained by at most one thread at a time and is removed
+ * as soon as it becomes idle. The lanes are bounded: the count of the pending tasks of all the lanes and
+ * of each lane is limited, the excess tasks are rejected. The task starting the idle lane is rejected as well
+ * if the executor rejects the lane; the lane already having the waiting tasks is rescheduled later instead
+ * (the submitting thread never drains the lane).
+ *
+ * @author Ilya Sadykov
+ */
+public class SerialLanes {
+
+    /**
+     * Max count of the tasks executed by one drain before the lane yields the thread to the other lanes
+     */
+    public static final int BATCH_SIZE = 64;
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    public static final int DEFAULT_LANE_CAPACITY = 100;
+
+    /**
+     * Delay of the next attempt to schedule the lane rejected by the saturated executor
+     */
+    public static final long RETRY_DELAY_MILLIS = 1;
+
+    private static final Logger logger = LoggerFactory.getLogger(SerialLanes.class);
+
+    private static final ScheduledExecutorService retryTimer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "lane-retry");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Executor executor;
+    private final Semaphore capacity;
+    private final int laneCapacity;
+    private final ConcurrentMap<Object, Lane> lanes = new ConcurrentHashMap<Object, Lane>();
+
+    public SerialLanes(Executor executor) {
+        this(executor, DEFAULT_CAPACITY, DEFAULT_LANE_CAPACITY);
+    }
+
+    /**
+     * @param executor     executor draining the lanes
+     * @param capacity     max count of the pending tasks of all the lanes
+     * @param laneCapacity max count of the pending tasks of each lane
+     */
+    public SerialLanes(Executor executor, int capacity, int laneCapacity) {
+        if (capacity <= 0 || laneCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity of the lanes must be positive!");
+        }
+        this.executor = executor;
+        this.capacity = new Semaphore(capacity);
+        this.laneCapacity = laneCapacity;
+    }
+
+    /**
+     * Executes the task after all the previously submitted tasks of the same key
+     *
+     * @param key  key of the lane
+     * @param task task
+     * @throws RejectedExecutionException if the lanes are full or the executor rejects the idle lane
+     */
+    public void execute(Object key, Runnable task) throws RejectedExecutionException {
+        if (!capacity.tryAcquire()) {
+            throw new RejectedExecutionException("Too many pending lane tasks");
+        }
+        try {
+            for (; ; ) {
+                Lane lane = lanes.get(key);
+                if (lane == null) {
+                    Lane created = new Lane(key);
+                    lane = lanes.putIfAbsent(key, created);
+                    if (lane == null) {
+                        lane = created;
+                    }
+                }
+                if (lane.offer(task)) {
+                    return;
+                }
+                // the lane is retired by its drain, replace it
+                lanes.remove(key, lane);
+            }
+        } catch (RejectedExecutionException e) {
+            capacity.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return count of the lanes having the pending tasks
+     */
+    public int getActiveLanes() {
+        return lanes.size();
+    }
+
+    /**
+     * @return count of the tasks which can be submitted without the rejection
+     */
+    public int getAvailableCapacity() {
+        return capacity.availablePermits();
+    }
+
+    private final class Lane implements Runnable {
+        private final Object key;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        /**
+         * Count of the submitted and not completed tasks, -1 when the lane is retired
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        Lane(Object key) {
+            this.key = key;
+        }
+
+        /**
+         * @return false if the lane is retired
+         * @throws RejectedExecutionException if the lane is full or the executor rejects the idle lane
+         */
+        boolean offer(Runnable task) throws RejectedExecutionException {
+            int count;
+            do {
+                count = pending.get();
+                if (count < 0) {
+                    return false;
+                }
+                if (count >= laneCapacity) {
+                    throw new RejectedExecutionException("Too many pending tasks of the lane " + key);
+                }
+            } while (!pending.compareAndSet(count, count + 1));
+            tasks.offer(task);
+            if (count == 0) {
+                activate(task);
+            }
+            return true;
+        }
+
+        private void activate(Runnable task) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                if (pending.compareAndSet(1, -1)) {
+                    // nobody has joined the lane yet, withdraw the task
+                    tasks.remove(task);
+                    lanes.remove(key, this);
+                    throw e;
+                }
+                retry();
+            }
+        }
+
+        private void retry() {
+            if (executor instanceof ExecutorService && ((ExecutorService) executor).isShutdown()) {
+                logger.error("Tasks of the lane " + key + " are dropped: the executor is shut down");
+                return;
+            }
+            retryTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        executor.execute(Lane.this);
+                    } catch (RejectedExecutionException e) {
+                        retry();
+                    }
+                }
+            }, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            for (int executed = 0; ; ++executed) {
+                if (executed == BATCH_SIZE) {
+                    try {
+                        executor.execute(this);
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        executed = 0;
+                    }
+                }
+                Runnable task;
+                while ((task = tasks.poll()) == null) {
+                    // the submitter has counted the task but not queued it yet
+                    Thread.yield();
+                }
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    logger.error("Task of the lane " + key + " failed: " + e.getMessage(), e);
+                } finally {
+                    capacity.release();
+                }
+                if (pending.compareAndSet(1, -1)) {
+                    lanes.remove(key, this);
+                    return;
+                }
+                pending.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package me.smecsia.smartfox.tools.util;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registry of the values computed once per class (the pre-java7 alternative of the ClassValue).
+ * Classes are referenced weakly, so the registry does not prevent the unloading of the extensions classloaders.
+ * The value for each class is computed only once even if it's requested concurrently.
+ * As the computed values usually reference their classes, they may be held softly, otherwise
+ * {@link #invalidate(ClassLoader)} must be called when the extension is destroyed to release its classes.
+ *
+ * @author Ilya Sadykov
+ */
+public abstract class ClassRegistry<V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+    private final boolean softValues;
+
+    /**
+     * @param softValues true if the values may be released by GC when the memory is low (they will be recomputed)
+     */
+    protected ClassRegistry(boolean softValues) {
+        this.softValues = softValues;
+    }
+
+    /**
+     * Computes the value for the class. Called only once per class unless the value is invalidated.
+     *
+     * @param type class
+     * @return value for the class
+     */
+    protected abstract V computeValue(Class<?> type);
+
+    /**
+     * Returns the value for the class computing it if necessary.
+     * The lookup of the already registered class is lock-free and does not allocate.
+     *
+     * @param type class
+     * @return value for the class
+     */
+    public V get(Class<?> type) {
+        Slot<V> slot = find(table, type);
+        if (slot == null) {
+            slot = register(type);
+        }
+        return slot.get(this, type);
+    }
+
+    /**
+     * Removes the value for the class
+     *
+     * @param type class
+     */
+    public synchronized void invalidate(Class<?> type) {
+        Entry[] tab = table;
+        List<Entry> alive = new ArrayList<Entry>();
+        for (Entry entry : tab) {
+            if (entry != null && entry.get() != null && entry.get() != type) {
+                alive.add(entry);
+            }
+        }
+        table = rehash(alive, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Removes the values for all the classes loaded by the classloader (or by its descendants)
+     *
+     * @param classLoader classloader
+     */
+    public synchronized void invalidate(ClassLoader classLoader) {
+        Entry[] tab = table;
+        List<Entry> alive = new ArrayList<Entry>();
+        for (Entry entry : tab) {
+            Class<?> type = (entry != null) ? entry.get() : null;
+            if (type != null && !isLoadedBy(type, classLoader)) {
+                alive.add(entry);
+            }
+        }
+        table = rehash(alive, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Removes all the values
+     */
+    public synchronized void clear() {
+        table = new Entry[INITIAL_CAPACITY];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Slot<V> find(Entry[] tab, Class<?> type) {
+        int mask = tab.length - 1;
+        Entry entry;
+        for (int i = hash(type) & mask; (entry = tab[i]) != null; i = (i + 1) & mask) {
+            if (entry.get() == type) {
+                return (Slot<V>) entry.slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies the table adding the new entry (dropping the entries of the unloaded classes)
+     */
+    private synchronized Slot<V> register(Class<?> type) {
+        Entry[] tab = table;
+        Slot<V> slot = find(tab, type);
+        if (slot == null) {
+            List<Entry> alive = new ArrayList<Entry>();
+            for (Entry entry : tab) {
+                if (entry != null && entry.get() != null) {
+                    alive.add(entry);
+                }
+            }
+            slot = new Slot<V>(softValues);
+            alive.add(new Entry(type, slot));
+            table = rehash(alive, tab.length);
+        }
+        return slot;
+    }
+
+    private static Entry[] rehash(List<Entry> entries, int minCapacity) {
+        int capacity = minCapacity;
+        while (capacity < entries.size() * 2) {
+            capacity <<= 1;
+        }
+        Entry[] tab = new Entry[capacity];
+        int mask = capacity - 1;
+        for (Entry entry : entries) {
+            int i = entry.hash & mask;
+            while (tab[i] != null) {
+                i = (i + 1) & mask;
+            }
+            tab[i] = entry;
+        }
+        return tab;
+    }
+
+    private static int hash(Class<?> type) {
+        int h = System.identityHashCode(type);
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean isLoadedBy(Class<?> type, ClassLoader classLoader) {
+        for (ClassLoader loader = type.getClassLoader(); loader != null; loader = loader.getParent()) {
+            if (loader == classLoader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Holder of the value, computes the value under its own lock
+     */
+    private static final class Slot<V> {
+        private final boolean softValues;
+        private volatile Object value;
+
+        Slot(boolean softValues) {
+            this.softValues = softValues;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V peek() {
+            Object v = value;
+            return (v instanceof SoftReference) ? ((SoftReference<V>) v).get() : (V) v;
+        }
+
+        V get(ClassRegistry<V> registry, Class<?> type) {
+            V result = peek();
+            if (result == null) {
+                synchronized (this) {
+                    result = peek();
+                    if (result == null) {
+                        result = registry.computeValue(type);
+                        value = (softValues) ? new SoftReference<V>(result) : result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Weak reference to the class with its value slot
+     */
+    private static final class Entry extends WeakReference<Class<?>> {
+        final int hash;
+        final Slot<?> slot;
+
+        Entry(Class<?> type, Slot<?> slot) {
+            super(type);
+            this.hash = ClassRegistry.hash(type);
+            this.slot = slot;
+        }
+    }
+}
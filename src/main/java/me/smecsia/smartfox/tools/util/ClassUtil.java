@@ -1,12 +1,16 @@
 package me.smecsia.smartfox.tools.util;
 
-import org.apache.commons.lang.ArrayUtils;
-
 import java.io.File;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Util class allowing to scan all the classes inside the specified package and other class operations
@@ -66,12 +70,12 @@ public class ClassUtil {
      * @return
      */
     public static Field[] getFieldsInClassHierarchy(Class<?> clazz) {
-        Field[] fields = {};
+        List<Field> fields = new ArrayList<Field>();
         while (clazz != null) {
-            fields = (Field[]) ArrayUtils.addAll(fields, clazz.getDeclaredFields());
+            Collections.addAll(fields, clazz.getDeclaredFields());
             clazz = clazz.getSuperclass();
         }
-        return fields;
+        return fields.toArray(new Field[fields.size()]);
     }
 
     /**
@@ -80,12 +84,12 @@ public class ClassUtil {
      * @return
      */
     public static Method[] getMethodsInClassHierarchy(Class<?> clazz) {
-        Method[] methods = {};
+        List<Method> methods = new ArrayList<Method>();
         while (clazz != null) {
-            methods = (Method[]) ArrayUtils.addAll(methods, clazz.getDeclaredMethods());
+            Collections.addAll(methods, clazz.getDeclaredMethods());
             clazz = clazz.getSuperclass();
         }
-        return methods;
+        return methods.toArray(new Method[methods.size()]);
     }
 
     /**
@@ -112,7 +116,52 @@ public class ClassUtil {
     }
 
     /**
-     * Invokes any object method (even if it's private)
+     * Resolves the type arguments of the generic superclass (e.g. the request class of the typed handler)
+     * following the type variables bound in the hierarchy between the class and the superclass
+     *
+     * @param clazz      subclass
+     * @param superclass generic superclass
+     * @return classes of the type arguments (null elements for the unresolved ones)
+     * or null if the superclass is not in the hierarchy of the class
+     */
+    public static Class<?>[] getSuperclassTypeArguments(Class<?> clazz, Class<?> superclass) {
+        Map<TypeVariable<?>, Type> bindings = new HashMap<TypeVariable<?>, Type>();
+        Type type = clazz;
+        while (type != null) {
+            Class<?> raw;
+            if (type instanceof ParameterizedType) {
+                raw = (Class<?>) ((ParameterizedType) type).getRawType();
+                TypeVariable<?>[] variables = raw.getTypeParameters();
+                Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+                for (int i = 0; i < variables.length; ++i) {
+                    bindings.put(variables[i], arguments[i]);
+                }
+            } else {
+                raw = (Class<?>) type;
+            }
+            if (raw == superclass) {
+                TypeVariable<?>[] variables = raw.getTypeParameters();
+                Class<?>[] result = new Class<?>[variables.length];
+                for (int i = 0; i < variables.length; ++i) {
+                    Type argument = variables[i];
+                    while (argument instanceof TypeVariable && bindings.containsKey(argument)) {
+                        argument = bindings.get(argument);
+                    }
+                    if (argument instanceof ParameterizedType) {
+                        argument = ((ParameterizedType) argument).getRawType();
+                    }
+                    result[i] = (argument instanceof Class) ? (Class<?>) argument : null;
+                }
+                return result;
+            }
+            type = raw.getGenericSuperclass();
+        }
+        return null;
+    }
+
+    /**
+     * Invokes any object method (even if it's private). The method is searched in the class hierarchy
+     * and cached, so the subsequent calls do not use the reflective lookups.
      *
      * @param instance
      * @param method
@@ -121,30 +170,32 @@ public class ClassUtil {
      */
     public static <T> Object invokeAnyMethod(T instance, String method, Class<?>[] argTypes, Object... arguments) throws
             NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        List<Class<?>> types = new ArrayList<Class<?>>();
         if (argTypes == null) {
-            for (Object arg : arguments) {
-                types.add(arg.getClass());
+            argTypes = new Class<?>[arguments.length];
+            for (int i = 0; i < arguments.length; ++i) {
+                argTypes[i] = arguments[i].getClass();
             }
-            argTypes = types.toArray(new Class<?>[types.size()]);
         }
-        Method m = instance.getClass().getDeclaredMethod(method, argTypes);
-        m.setAccessible(true);
+        Method m = findMethod(instance.getClass(), method, argTypes);
+        if (m == null) {
+            throw new NoSuchMethodException(instance.getClass().getName() + "." + method + Arrays.toString(argTypes));
+        }
         return m.invoke(instance, arguments);
     }
 
     /**
-     * Set private field
+     * Set private field (the field is searched in the class hierarchy and cached)
      *
      * @param instance
      * @param name
      * @param <T>
      */
     public static <T> void setPrivateField(T instance, String name, Object value) throws NoSuchFieldException, IllegalAccessException {
-        Field field = (instance instanceof Class)
-                ? ((Class) instance).getDeclaredField(name)
-                : instance.getClass().getDeclaredField(name);
-        field.setAccessible(true);
+        Class<?> clazz = (instance instanceof Class) ? (Class<?>) instance : instance.getClass();
+        Field field = findField(clazz, name);
+        if (field == null) {
+            throw new NoSuchFieldException(clazz.getName() + "." + name);
+        }
         field.set(instance, value);
     }
 
@@ -159,4 +210,116 @@ public class ClassUtil {
             NoSuchMethodException, IllegalAccessException {
         return invokeAnyMethod(instance, method, null, args);
     }
+
+    /**
+     * Finds the method declared in the class or in its superclasses (even if it's private) and makes it accessible.
+     * Both found and missing methods are cached per class.
+     *
+     * @param clazz    class
+     * @param name     method name
+     * @param argTypes exact parameter types
+     * @return accessible method or null if there is no such method
+     */
+    public static Method findMethod(Class<?> clazz, String name, Class<?>... argTypes) {
+        return members.get(clazz).getMethod(clazz, new MethodKey(name, argTypes));
+    }
+
+    /**
+     * Finds the field declared in the class or in its superclasses (even if it's private) and makes it accessible.
+     * Both found and missing fields are cached per class.
+     *
+     * @param clazz class
+     * @param name  field name
+     * @return accessible field or null if there is no such field
+     */
+    public static Field findField(Class<?> clazz, String name) {
+        return members.get(clazz).getField(clazz, name);
+    }
+
+    private static final Object NOT_FOUND = new Object();
+
+    private static final ClassRegistry<Members> members = new ClassRegistry<Members>(true) {
+        @Override
+        protected Members computeValue(Class<?> type) {
+            return new Members();
+        }
+    };
+
+    /**
+     * Signature of the method. The lookup keys refer to the caller's array, the cached keys own their copies.
+     */
+    private static final class MethodKey {
+        final String name;
+        final Class<?>[] argTypes;
+        final int hash;
+
+        MethodKey(String name, Class<?>[] argTypes) {
+            this.name = name;
+            this.argTypes = argTypes;
+            this.hash = 31 * name.hashCode() + Arrays.hashCode(argTypes);
+        }
+
+        /**
+         * @return the key owning the copy of the argument types, safe to be kept in the cache
+         */
+        MethodKey copy() {
+            return new MethodKey(name, argTypes.clone());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MethodKey)) {
+                return false;
+            }
+            MethodKey other = (MethodKey) o;
+            return name.equals(other.name) && Arrays.equals(argTypes, other.argTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Cache of the accessible members of the class (NOT_FOUND marks the missing members)
+     */
+    private static final class Members {
+        final ConcurrentMap<MethodKey, Object> methods = new ConcurrentHashMap<MethodKey, Object>();
+        final ConcurrentMap<String, Object> fields = new ConcurrentHashMap<String, Object>();
+
+        Method getMethod(Class<?> clazz, MethodKey key) {
+            Object method = methods.get(key);
+            if (method == null) {
+                method = NOT_FOUND;
+                for (Class<?> c = clazz; c != null && method == NOT_FOUND; c = c.getSuperclass()) {
+                    try {
+                        Method m = c.getDeclaredMethod(key.name, key.argTypes);
+                        m.setAccessible(true);
+                        method = m;
+                    } catch (NoSuchMethodException ignored) {
+                    }
+                }
+                methods.putIfAbsent(key.copy(), method);
+            }
+            return (method != NOT_FOUND) ? (Method) method : null;
+        }
+
+        Field getField(Class<?> clazz, String name) {
+            Object field = fields.get(name);
+            if (field == null) {
+                field = NOT_FOUND;
+                for (Class<?> c = clazz; c != null && field == NOT_FOUND; c = c.getSuperclass()) {
+                    try {
+                        Field f = c.getDeclaredField(name);
+                        f.setAccessible(true);
+                        field = f;
+                    } catch (NoSuchFieldException ignored) {
+                    }
+                }
+                fields.putIfAbsent(name, field);
+            }
+            return (field != NOT_FOUND) ? (Field) field : null;
+        }
+    }
 }
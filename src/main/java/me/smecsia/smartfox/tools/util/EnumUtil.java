@@ -1,7 +1,10 @@
 package me.smecsia.smartfox.tools.util;
 
+import me.smecsia.smartfox.tools.annotations.EnumAlias;
+import me.smecsia.smartfox.tools.annotations.EnumOrdinal;
 import org.apache.commons.collections.Transformer;
 
+import java.lang.annotation.Annotation;
 import java.util.*;
 
 import static me.smecsia.smartfox.tools.util.RandomUtil.randomInt;
@@ -14,7 +17,109 @@ import static org.apache.commons.collections.CollectionUtils.collect;
  */
 public class EnumUtil {
 
-    private static final Map<Class<? extends Enum>, Set<String>> cache = new HashMap<Class<? extends Enum>, Set<String>>();
+    /**
+     * Immutable lookup table of the enum constants built once per enum class
+     */
+    private static final class EnumTable<E extends Enum<E>> {
+        final E[] constants;
+        final Map<String, E> byName;
+        final Map<String, E> byAlias;
+        final int[] wireOrdinals;
+        final E[] byWireOrdinal;
+
+        EnumTable(Class<E> enumClass) {
+            constants = enumClass.getEnumConstants();
+            Map<String, E> names = new HashMap<String, E>();
+            Map<String, E> aliases = new HashMap<String, E>();
+            Map<String, E> explicitAliases = new HashMap<String, E>();
+            for (E constant : constants) {
+                names.put(constant.name(), constant);
+                EnumAlias enumAlias = getAnnotation(enumClass, constant, EnumAlias.class);
+                if (enumAlias != null) {
+                    for (String alias : enumAlias.value()) {
+                        E existing = explicitAliases.put(alias, constant);
+                        if (existing != null && existing != constant) {
+                            throw new IllegalArgumentException("Alias '" + alias + "' is declared for both " +
+                                    existing + " and " + constant + " of the enum " + enumClass + "!");
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<String, E> alias : explicitAliases.entrySet()) {
+                aliases.put(alias.getKey().toLowerCase(Locale.ENGLISH), alias.getValue());
+            }
+            aliases.putAll(explicitAliases);
+            for (E constant : constants) {
+                aliases.put(constant.name().toLowerCase(Locale.ENGLISH), constant);
+            }
+            aliases.putAll(names);
+            byName = Collections.unmodifiableMap(names);
+            byAlias = Collections.unmodifiableMap(aliases);
+            wireOrdinals = readWireOrdinals(enumClass, constants);
+            int maxWireOrdinal = -1;
+            for (int wireOrdinal : wireOrdinals) {
+                maxWireOrdinal = Math.max(maxWireOrdinal, wireOrdinal);
+            }
+            byWireOrdinal = Arrays.copyOf(constants, maxWireOrdinal + 1);
+            Arrays.fill(byWireOrdinal, null);
+            for (E constant : constants) {
+                byWireOrdinal[wireOrdinals[constant.ordinal()]] = constant;
+            }
+        }
+
+        private static int[] readWireOrdinals(Class<?> enumClass, Enum<?>[] constants) {
+            int[] result = new int[constants.length];
+            Set<Integer> declared = new HashSet<Integer>();
+            for (Enum<?> constant : constants) {
+                EnumOrdinal enumOrdinal = getAnnotation(enumClass, constant, EnumOrdinal.class);
+                if (enumOrdinal == null) {
+                    if (!declared.isEmpty()) {
+                        throw new IllegalArgumentException("Constant " + constant + " of the enum " + enumClass +
+                                " must be annotated with @EnumOrdinal as the other constants are!");
+                    }
+                    result[constant.ordinal()] = constant.ordinal();
+                } else {
+                    if (declared.isEmpty() && constant.ordinal() > 0) {
+                        throw new IllegalArgumentException("All the constants of the enum " + enumClass +
+                                " must be annotated with @EnumOrdinal!");
+                    }
+                    if (enumOrdinal.value() < 0 || enumOrdinal.value() > Short.MAX_VALUE
+                            || !declared.add(enumOrdinal.value())) {
+                        throw new IllegalArgumentException("Wrong or duplicated @EnumOrdinal of the constant " +
+                                constant + " of the enum " + enumClass + ": " + enumOrdinal.value() + "!");
+                    }
+                    result[constant.ordinal()] = enumOrdinal.value();
+                }
+            }
+            return result;
+        }
+
+        private static <A extends Annotation> A getAnnotation(Class<?> enumClass, Enum<?> constant,
+                                                              Class<A> annotationClass) {
+            try {
+                return enumClass.getField(constant.name()).getAnnotation(annotationClass);
+            } catch (NoSuchFieldException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final ClassRegistry<EnumTable<?>> tables = new ClassRegistry<EnumTable<?>>(true) {
+        @Override
+        protected EnumTable<?> computeValue(Class<?> type) {
+            return newTable(type);
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Enum<E>> EnumTable<E> newTable(Class<?> enumClass) {
+        return new EnumTable<E>((Class<E>) enumClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Enum<E>> EnumTable<E> table(Class<E> enumClass) {
+        return (EnumTable<E>) tables.get(enumClass);
+    }
 
     /**
      * Checks that an String element is contained by the enumclass
@@ -24,14 +129,7 @@ public class EnumUtil {
      * @return true if enumClass contains value
      */
     public static boolean enumContains(Class<? extends Enum> enumClass, String value) {
-        if (!cache.containsKey(enumClass)) {
-            Set<String> options = new HashSet<String>();
-            for (Enum opt : enumClass.getEnumConstants()) {
-                options.add(String.valueOf(opt));
-            }
-            cache.put(enumClass, options);
-        }
-        return cache.get(enumClass).contains(value);
+        return value != null && tables.get(enumClass).byName.containsKey(value);
     }
 
     /**
@@ -43,12 +141,35 @@ public class EnumUtil {
      * @return
      */
     public static <T extends Enum<T>> T fromString(Class<T> enumClass, String value) {
-        if (!enumContains(enumClass, value)) {
+        T result = (value != null) ? table(enumClass).byName.get(value) : null;
+        if (result == null) {
             throw new IllegalArgumentException("Wrong value provided to the enum: " + enumClass + " : " + value + "!");
         }
-        return Enum.valueOf(enumClass, value);
+        return result;
     }
 
+    /**
+     * Get the enum value from its name ignoring the case or from one of its aliases declared with {@link EnumAlias}
+     *
+     * @param enumClass
+     * @param value
+     * @param <T>
+     * @return
+     */
+    public static <T extends Enum<T>> T fromAlias(Class<T> enumClass, String value) {
+        T result = null;
+        if (value != null) {
+            Map<String, T> byAlias = table(enumClass).byAlias;
+            result = byAlias.get(value);
+            if (result == null) {
+                result = byAlias.get(value.toLowerCase(Locale.ENGLISH));
+            }
+        }
+        if (result == null) {
+            throw new IllegalArgumentException("Wrong value provided to the enum: " + enumClass + " : " + value + "!");
+        }
+        return result;
+    }
 
     /**
      * Get the enum value from its ordinal value
@@ -58,15 +179,125 @@ public class EnumUtil {
      * @param <T>
      * @return
      */
-    @SuppressWarnings("unchecked")
     public static <T extends Enum<T>> T fromOrdinal(Class<T> enumClass, Integer value) {
-        Enum<T>[] values = (enumClass).getEnumConstants();
+        T[] values = table(enumClass).constants;
         if (value > values.length - 1 || value < 0) {
             throw new IllegalArgumentException("Wrong value provided for the enum " + enumClass + " : " + value + "!");
         }
-        return (T) values[value];
+        return values[value];
+    }
+
+    /**
+     * Returns the stable ordinal of the enum value (declared with {@link EnumOrdinal} or the declaration order)
+     *
+     * @param value
+     * @return
+     */
+    public static int toWireOrdinal(Enum<?> value) {
+        return tables.get(value.getDeclaringClass()).wireOrdinals[value.ordinal()];
     }
 
+    /**
+     * Get the enum value from its stable ordinal value (declared with {@link EnumOrdinal} or the declaration order)
+     *
+     * @param enumClass
+     * @param value
+     * @param <T>
+     * @return
+     */
+    public static <T extends Enum<T>> T fromWireOrdinal(Class<T> enumClass, int value) {
+        return byWireOrdinal(table(enumClass), value);
+    }
+
+    /**
+     * Get the enum value from its serialized form: either the name or the stable ordinal
+     *
+     * @param enumClass
+     * @param value     name string or ordinal number
+     * @return
+     */
+    public static Enum<?> fromWireValue(Class<? extends Enum<?>> enumClass, Object value) {
+        EnumTable<?> table = tables.get(enumClass);
+        if (value instanceof Number) {
+            return byWireOrdinal(table, ((Number) value).intValue());
+        }
+        Enum<?> result = (value != null) ? table.byName.get(value) : null;
+        if (result == null) {
+            throw new IllegalArgumentException("Wrong value provided to the enum: " + enumClass + " : " + value + "!");
+        }
+        return result;
+    }
+
+    private static <E extends Enum<E>> E byWireOrdinal(EnumTable<E> table, int value) {
+        E result = (value >= 0 && value < table.byWireOrdinal.length) ? table.byWireOrdinal[value] : null;
+        if (result == null) {
+            throw new IllegalArgumentException("Wrong ordinal provided for the enum " +
+                    table.constants.getClass().getComponentType() + " : " + value + "!");
+        }
+        return result;
+    }
+
+    /**
+     * Returns the max stable ordinal of the enum
+     *
+     * @param enumClass
+     * @return
+     */
+    public static int maxWireOrdinal(Class<? extends Enum<?>> enumClass) {
+        return tables.get(enumClass).byWireOrdinal.length - 1;
+    }
+
+    /**
+     * Converts the collection of enums into the bitmask (bit index is the stable ordinal of the value)
+     *
+     * @param enumClass
+     * @param values
+     * @return bitmask words
+     */
+    public static long[] toBitmask(Class<? extends Enum<?>> enumClass, Collection<? extends Enum<?>> values) {
+        EnumTable<?> table = tables.get(enumClass);
+        long[] words = new long[(table.byWireOrdinal.length + 63) >>> 6];
+        for (Enum<?> value : values) {
+            int bit = table.wireOrdinals[value.ordinal()];
+            words[bit >>> 6] |= (1L << bit);
+        }
+        return words;
+    }
+
+    /**
+     * Converts the bitmask into the set of enums (bit index is the stable ordinal of the value)
+     *
+     * @param enumClass
+     * @param words     bitmask words
+     * @param <T>
+     * @return
+     */
+    public static <T extends Enum<T>> EnumSet<T> fromBitmask(Class<T> enumClass, long... words) {
+        T[] values = table(enumClass).byWireOrdinal;
+        EnumSet<T> result = EnumSet.noneOf(enumClass);
+        for (int w = 0; w < words.length; ++w) {
+            long word = words[w];
+            while (word != 0) {
+                int bit = (w << 6) + Long.numberOfTrailingZeros(word);
+                if (bit >= values.length || values[bit] == null) {
+                    throw new IllegalArgumentException("Wrong bitmask provided for the enum " + enumClass + "!");
+                }
+                result.add(values[bit]);
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the count of the enum constants
+     *
+     * @param enumClass
+     * @return
+     */
+    public static int size(Class<? extends Enum<?>> enumClass) {
+        return tables.get(enumClass).constants.length;
+    }
 
     /**
      * Converts list of strings into list of enum
@@ -111,7 +342,7 @@ public class EnumUtil {
      * @return
      */
     public static <T extends Enum<T>> T random(Class<T> enumClass) {
-        int rand = randomInt(enumClass.getEnumConstants().length);
-        return fromOrdinal(enumClass, rand);
+        T[] values = table(enumClass).constants;
+        return values[randomInt(values.length)];
     }
 }
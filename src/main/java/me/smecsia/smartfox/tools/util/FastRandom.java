@@ -0,0 +1,104 @@
+package me.smecsia.smartfox.tools.util;
+
+import java.util.Random;
+
+/**
+ * Fast non-secure random generator (SplitMix64 algorithm). It's not thread-safe: use the per-thread instance
+ * returned by {@link RandomUtil#current()} or create the own instance per room/simulation.
+ * The same seed always produces the same stream of values, so it can be used for deterministic simulations.
+ *
+ * @author Ilya Sadykov
+ */
+public class FastRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+    private long state;
+
+    public FastRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Creates the generator of the independent stream (e.g. per room) derived from the common seed
+     *
+     * @param seed     common seed
+     * @param streamId stream identifier
+     */
+    public FastRandom(long seed, long streamId) {
+        this(mix64(seed) ^ mix64(streamId + GOLDEN_GAMMA));
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Creates the new generator which stream does not depend on the stream of this one
+     *
+     * @return new generator
+     */
+    public FastRandom split() {
+        return new FastRandom(mix64(nextSeed()));
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        int r = nextInt();
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1) {
+            // reject the values from the incomplete last range
+        }
+        return r;
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    @Override
+    public float nextFloat() {
+        return (nextLong() >>> 40) / ((float) (1 << 24));
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    private long nextSeed() {
+        return (state += GOLDEN_GAMMA);
+    }
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,8 +1,7 @@
 package me.smecsia.smartfox.tools.util;
 
-import java.math.BigInteger;
-import java.security.SecureRandom;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Copyright (c) 2012 i-Free. All Rights Reserved.
@@ -13,18 +12,65 @@ import java.util.Random;
  */
 public class RandomUtil {
 
-    private static final SecureRandom random = new SecureRandom();
-    private static Random randomValue = new Random();
+    private static final AtomicLong seedUniquifier = new AtomicLong(System.nanoTime());
+    private static final TokenGenerator tokens = new TokenGenerator(TokenGenerator.Encoding.BASE32, 130);
+    private static final ThreadLocal<FastRandom> randomValue = new ThreadLocal<FastRandom>() {
+        @Override
+        protected FastRandom initialValue() {
+            return new FastRandom(FastRandom.mix64(seedUniquifier.addAndGet(0x9e3779b97f4a7c15L)) ^ System.nanoTime());
+        }
+    };
+
+    /**
+     * Returns the non-secure random generator of the current thread (must not be shared with the other threads)
+     *
+     * @return random generator
+     */
+    public static Random current() {
+        return randomValue.get();
+    }
+
+    /**
+     * Creates the reproducible random generator (e.g. for the deterministic simulations)
+     *
+     * @param seed seed of the stream
+     * @return new random generator
+     */
+    public static FastRandom seededRandom(long seed) {
+        return new FastRandom(seed);
+    }
+
+    /**
+     * Creates the reproducible random generator of the independent stream (e.g. per room) derived from the seed
+     *
+     * @param seed     common seed
+     * @param streamId stream identifier (e.g. room id)
+     * @return new random generator
+     */
+    public static FastRandom seededRandom(long seed, long streamId) {
+        return new FastRandom(seed, streamId);
+    }
 
     public static int randomInt(int max) {
-        return randomValue.nextInt(max);
+        return randomValue.get().nextInt(max);
     }
 
     public static int randomInt() {
-        return randomValue.nextInt();
+        return randomValue.get().nextInt();
+    }
+
+    public static long randomLong() {
+        return randomValue.get().nextLong();
+    }
+
+    public static double randomDouble() {
+        return randomValue.get().nextDouble();
     }
 
+    /**
+     * @return secure random string of 130 bits encoded with base32
+     */
     public static String randomString() {
-        return new BigInteger(130, random).toString(32);
+        return tokens.next();
     }
 }
@@ -4,6 +4,7 @@ import com.smartfoxserver.v2.entities.data.ISFSArray;
 import com.smartfoxserver.v2.entities.data.ISFSObject;
 import com.smartfoxserver.v2.entities.data.SFSDataWrapper;
 import me.smecsia.common.serialize.TransportObject;
+import me.smecsia.smartfox.tools.serialize.FieldSet;
 import me.smecsia.smartfox.tools.serialize.SFSSerializer;
 
 import static org.apache.commons.lang.StringUtils.isEmpty;
@@ -109,7 +110,32 @@ public class SFSObjectUtil {
         return SFS_SERIALIZER.deserialize(clazz, sfsObj);
     }
 
+    public static <T extends TransportObject> TransportObject deserialize(Class<T> clazz, ISFSObject sfsObj,
+                                                                          FieldSet fieldSet) {
+        return SFS_SERIALIZER.deserialize(clazz, sfsObj, fieldSet);
+    }
+
     public static ISFSObject serialize(TransportObject transportObject) {
         return SFS_SERIALIZER.serialize(transportObject);
     }
+
+    public static ISFSObject serialize(TransportObject transportObject, FieldSet fieldSet) {
+        return SFS_SERIALIZER.serialize(transportObject, fieldSet);
+    }
+
+    public static ISFSObject serializeView(TransportObject transportObject, String view) {
+        return SFS_SERIALIZER.serializeView(transportObject, view);
+    }
+
+    public static <T extends TransportObject> SFSSerializer.Binding<T> bind(Class<T> clazz) {
+        return SFS_SERIALIZER.bind(clazz);
+    }
+
+    public static <T extends TransportObject> T copy(T transportObject) {
+        return SFS_SERIALIZER.copy(transportObject);
+    }
+
+    public static <T extends TransportObject> T copyInto(T source, T target) {
+        return SFS_SERIALIZER.copyInto(source, target);
+    }
 }
@@ -0,0 +1,102 @@
+package me.smecsia.smartfox.tools.util;
+
+import java.security.SecureRandom;
+
+/**
+ * Secure random tokens generator. Each thread has its own SecureRandom and the buffer of the random bytes,
+ * refilled by large batches, so the generation does not contend between threads.
+ *
+ * @author Ilya Sadykov
+ */
+public class TokenGenerator {
+
+    private static final int BUFFER_SIZE = 1024;
+
+    /**
+     * Tokens encoding
+     */
+    public static enum Encoding {
+        HEX("0123456789abcdef"),
+        BASE32("0123456789abcdefghijklmnopqrstuv"),
+        BASE64_URL("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_");
+
+        private final char[] alphabet;
+        private final int bitsPerChar;
+
+        Encoding(String alphabet) {
+            this.alphabet = alphabet.toCharArray();
+            this.bitsPerChar = Integer.numberOfTrailingZeros(alphabet.length());
+        }
+    }
+
+    private static final class Buffer {
+        final SecureRandom random = new SecureRandom();
+        final byte[] bytes = new byte[BUFFER_SIZE];
+        int position = BUFFER_SIZE;
+
+        int nextByte() {
+            if (position == BUFFER_SIZE) {
+                random.nextBytes(bytes);
+                position = 0;
+            }
+            return bytes[position++];
+        }
+    }
+
+    private static final ThreadLocal<Buffer> buffers = new ThreadLocal<Buffer>() {
+        @Override
+        protected Buffer initialValue() {
+            return new Buffer();
+        }
+    };
+
+    private final char[] alphabet;
+    private final int mask;
+    private final int length;
+
+    /**
+     * @param encoding tokens encoding
+     * @param bits     min count of the random bits of each token
+     */
+    public TokenGenerator(Encoding encoding, int bits) {
+        if (bits <= 0) {
+            throw new IllegalArgumentException("Token must contain at least 1 random bit!");
+        }
+        this.alphabet = encoding.alphabet;
+        this.mask = alphabet.length - 1;
+        this.length = (bits + encoding.bitsPerChar - 1) / encoding.bitsPerChar;
+    }
+
+    /**
+     * @return length of the generated tokens
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return new random token
+     */
+    public String next() {
+        Buffer buffer = buffers.get();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; ++i) {
+            chars[i] = alphabet[buffer.nextByte() & mask];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Generates the batch of the tokens
+     *
+     * @param count count of the tokens
+     * @return new random tokens
+     */
+    public String[] next(int count) {
+        String[] result = new String[count];
+        for (int i = 0; i < count; ++i) {
+            result[i] = next();
+        }
+        return result;
+    }
+}
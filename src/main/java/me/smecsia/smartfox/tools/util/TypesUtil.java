@@ -1,5 +1,6 @@
 package me.smecsia.smartfox.tools.util;
 
+import me.smecsia.common.serialize.TransportObject;
 import me.smecsia.smartfox.tools.error.MetadataException;
 
 import java.util.*;
@@ -11,6 +12,57 @@ import java.util.*;
  */
 public class TypesUtil {
 
+    /**
+     * Classification of the java types supported by the serializer
+     */
+    public static enum ValueType {
+        ENTITY, STRING, LONG, DOUBLE, FLOAT, BOOLEAN, INT, SHORT, BYTE, DATE, ENUM, COLLECTION, MAP, OTHER
+    }
+
+    private static final ClassRegistry<ValueType> valueTypes = new ClassRegistry<ValueType>(false) {
+        @Override
+        protected ValueType computeValue(Class<?> type) {
+            if (TransportObject.class.isAssignableFrom(type)) {
+                return ValueType.ENTITY;
+            } else if (isString(type)) {
+                return ValueType.STRING;
+            } else if (isLong(type)) {
+                return ValueType.LONG;
+            } else if (isDouble(type)) {
+                return ValueType.DOUBLE;
+            } else if (isFloat(type)) {
+                return ValueType.FLOAT;
+            } else if (isBoolean(type)) {
+                return ValueType.BOOLEAN;
+            } else if (isInt(type)) {
+                return ValueType.INT;
+            } else if (type == Short.class || type == Short.TYPE) {
+                return ValueType.SHORT;
+            } else if (type == Byte.class || type == Byte.TYPE) {
+                return ValueType.BYTE;
+            } else if (isDate(type)) {
+                return ValueType.DATE;
+            } else if (Enum.class.isAssignableFrom(type)) {
+                return ValueType.ENUM;
+            } else if (Collection.class.isAssignableFrom(type)) {
+                return ValueType.COLLECTION;
+            } else if (Map.class.isAssignableFrom(type)) {
+                return ValueType.MAP;
+            }
+            return ValueType.OTHER;
+        }
+    };
+
+    /**
+     * Returns the classification of the type (computed once per class)
+     *
+     * @param type - java type
+     * @return value type
+     */
+    public static ValueType classify(Class<?> type) {
+        return valueTypes.get(type);
+    }
+
     /**
      * Checks if the fieldType is integer
      *
@@ -18,7 +70,7 @@ public class TypesUtil {
      * @return true if the given fieldType is integer
      */
     public static boolean isInt(Class<?> type) {
-        return Integer.class.isAssignableFrom(type) || (type.isPrimitive() && type.toString().equals("int"));
+        return type == Integer.class || type == Integer.TYPE;
     }
 
     /**
@@ -28,7 +80,7 @@ public class TypesUtil {
      * @return true if the given fieldType is double
      */
     public static boolean isDouble(Class<?> type) {
-        return Double.class.isAssignableFrom(type) || (type.isPrimitive() && type.toString().equals("double"));
+        return type == Double.class || type == Double.TYPE;
     }
 
     /**
@@ -38,7 +90,7 @@ public class TypesUtil {
      * @return true if the given fieldType is float
      */
     public static boolean isFloat(Class<?> type) {
-        return Float.class.isAssignableFrom(type) || (type.isPrimitive() && type.toString().equals("float"));
+        return type == Float.class || type == Float.TYPE;
     }
 
     /**
@@ -48,7 +100,7 @@ public class TypesUtil {
      * @return true if the given fieldType is boolean
      */
     public static boolean isBoolean(Class<?> type) {
-        return Boolean.class.isAssignableFrom(type) || (type.isPrimitive() && type.toString().equals("boolean"));
+        return type == Boolean.class || type == Boolean.TYPE;
     }
 
     /**
@@ -68,7 +120,7 @@ public class TypesUtil {
      * @return true if the given fieldType is long
      */
     public static boolean isLong(Class<?> type) {
-        return Long.class.isAssignableFrom(type) || (type.isPrimitive() && type.toString().equals("long"));
+        return type == Long.class || type == Long.TYPE;
     }
 
     /**
@@ -81,6 +133,45 @@ public class TypesUtil {
         return Date.class.isAssignableFrom(type);
     }
 
+    /**
+     * Returns the default value of the type: zero (false) for the primitives and null for the objects
+     *
+     * @param type - java type
+     * @return default value
+     */
+    public static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        } else if (type == Boolean.TYPE) {
+            return false;
+        } else if (type == Character.TYPE) {
+            return (char) 0;
+        } else if (type == Long.TYPE) {
+            return 0L;
+        } else if (type == Integer.TYPE) {
+            return 0;
+        } else if (type == Double.TYPE) {
+            return 0d;
+        } else if (type == Float.TYPE) {
+            return 0f;
+        } else if (type == Short.TYPE) {
+            return (short) 0;
+        } else if (type == Byte.TYPE) {
+            return (byte) 0;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the EnumSet can be assigned to the field of the collection type
+     *
+     * @param collClass - collection type
+     * @return true if the given type is a set which is a supertype of EnumSet
+     */
+    public static boolean isEnumSetCompatible(Class<?> collClass) {
+        return Set.class.isAssignableFrom(collClass) && collClass.isAssignableFrom(EnumSet.class);
+    }
+
     /**
      * Instantiate the collection by its class
      *
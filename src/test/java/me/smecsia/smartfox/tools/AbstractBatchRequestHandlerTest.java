@@ -0,0 +1,114 @@
+package me.smecsia.smartfox.tools;
+
+import com.smartfoxserver.bitswarm.sessions.Session;
+import com.smartfoxserver.v2.entities.SFSUser;
+import com.smartfoxserver.v2.entities.User;
+import com.smartfoxserver.v2.entities.data.SFSObject;
+import me.smecsia.smartfox.tools.annotations.Batch;
+import me.smecsia.smartfox.tools.annotations.Security;
+import me.smecsia.smartfox.tools.error.UnauthorizedException;
+import me.smecsia.smartfox.tools.service.BasicAuthService;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class AbstractBatchRequestHandlerTest {
+
+    public static class NoCheatersAuthService extends BasicAuthService {
+        static final AtomicInteger checks = new AtomicInteger();
+
+        @Override
+        public void check(User user) throws UnauthorizedException {
+            checks.incrementAndGet();
+            if ("cheater".equals(user.getName())) {
+                throw new UnauthorizedException("cheater");
+            }
+        }
+    }
+
+    @Batch(window = 50, maxSize = 3)
+    @Security(authService = NoCheatersAuthService.class)
+    public static class MoveHandler extends AbstractBatchRequestHandler {
+        static final BlockingQueue<List<Request>> batches = new LinkedBlockingQueue<List<Request>>();
+
+        @Override
+        public void doHandleBatch(List<Request> requests) {
+            batches.add(new ArrayList<Request>(requests));
+        }
+    }
+
+    @Batch(window = 5, maxSize = 4)
+    public static class InputHandler extends AbstractBatchRequestHandler {
+        static final List<Integer> inputs = Collections.synchronizedList(new ArrayList<Integer>());
+        static final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        static final AtomicInteger concurrent = new AtomicInteger();
+        static volatile boolean overlapped;
+
+        @Override
+        public void doHandleBatch(List<Request> requests) {
+            if (concurrent.incrementAndGet() > 1) {
+                overlapped = true;
+            }
+            threads.add(Thread.currentThread());
+            for (Request request : requests) {
+                inputs.add(request.getParams().getInt("seq"));
+            }
+            concurrent.decrementAndGet();
+        }
+    }
+
+    @Test
+    public void testBatchesAreOrderedAndOffloaded() throws Exception {
+        User player = new SFSUser("player", new Session());
+        final int count = 4 * AbstractBatchRequestHandler.MAX_PENDING_BATCHES - 1;
+        for (int i = 0; i < count; ++i) {
+            SFSObject params = new SFSObject();
+            params.putInt("seq", i);
+            new InputHandler().handleClientRequest(player, params);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (InputHandler.inputs.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, InputHandler.inputs.size());
+        for (int i = 0; i < count; ++i) {
+            assertEquals(i, (int) InputHandler.inputs.get(i));
+        }
+        assertFalse("Batches must not be handled concurrently", InputHandler.overlapped);
+        assertFalse("Batches must not be handled by the caller", InputHandler.threads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void testBatchHandling() throws Exception {
+        User player = new SFSUser("player", new Session());
+        User cheater = new SFSUser("cheater", new Session());
+
+        new MoveHandler().handleClientRequest(player, SFSObject.newInstance());
+        new MoveHandler().handleClientRequest(cheater, SFSObject.newInstance());
+        new MoveHandler().handleClientRequest(player, SFSObject.newInstance());
+
+        List<AbstractBatchRequestHandler.Request> batch = MoveHandler.batches.poll(1, TimeUnit.SECONDS);
+        assertNotNull(batch);
+        assertEquals(2, batch.size());
+        assertSame(player, batch.get(0).getUser());
+        assertEquals("Auth must be checked once per user", 2, NoCheatersAuthService.checks.get());
+
+        new MoveHandler().handleClientRequest(player, SFSObject.newInstance());
+        batch = MoveHandler.batches.poll(1, TimeUnit.SECONDS);
+        assertNotNull("Incomplete batch must be handled after the window", batch);
+        assertEquals(1, batch.size());
+    }
+}
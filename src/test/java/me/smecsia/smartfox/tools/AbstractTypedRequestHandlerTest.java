@@ -0,0 +1,129 @@
+package me.smecsia.smartfox.tools;
+
+import com.smartfoxserver.bitswarm.sessions.Session;
+import com.smartfoxserver.v2.entities.SFSUser;
+import com.smartfoxserver.v2.entities.User;
+import com.smartfoxserver.v2.entities.data.ISFSObject;
+import com.smartfoxserver.v2.entities.data.SFSObject;
+import me.smecsia.smartfox.tools.common.AbstractTransportObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class AbstractTypedRequestHandlerTest {
+
+    public static class MoveRequest extends AbstractTransportObject {
+        private Integer x;
+        private Integer y;
+    }
+
+    public static class MoveResponse extends AbstractTransportObject {
+        private Integer distance;
+    }
+
+    public static class EchoHandler extends AbstractTypedRequestHandler<MoveRequest, MoveResponse> {
+        final List<ISFSObject> sent = new ArrayList<ISFSObject>();
+        final List<MoveRequest> requests = new ArrayList<MoveRequest>();
+        MoveHandler nested;
+
+        public EchoHandler() {
+            super(true);
+        }
+
+        @Override
+        public MoveResponse doHandle(User user, MoveRequest request) {
+            requests.add(request);
+            if (nested != null) {
+                nested.handleClientRequest(user, move(5, 6));
+            }
+            MoveResponse response = new MoveResponse();
+            response.distance = request.x;
+            return response;
+        }
+
+        @Override
+        protected String getResponseCommand() {
+            return "moved";
+        }
+
+        @Override
+        protected void send(String command, ISFSObject params, User recipient) {
+            sent.add(params);
+        }
+    }
+
+    public static class MoveHandler extends AbstractTypedRequestHandler<MoveRequest, MoveResponse> {
+        final List<MoveRequest> requests = new ArrayList<MoveRequest>();
+        final List<Integer> ys = new ArrayList<Integer>();
+
+        public MoveHandler(boolean reuseRequests) {
+            super(reuseRequests);
+        }
+
+        @Override
+        public MoveResponse doHandle(User user, MoveRequest request) {
+            requests.add(request);
+            ys.add(request.y);
+            return null;
+        }
+    }
+
+    public abstract static class BaseHandler<R extends AbstractTransportObject>
+            extends AbstractTypedRequestHandler<R, MoveResponse> {
+    }
+
+    public static class InheritedHandler extends BaseHandler<MoveRequest> {
+        @Override
+        public MoveResponse doHandle(User user, MoveRequest request) {
+            return null;
+        }
+    }
+
+    @Test
+    public void testTypedRequests() {
+        User user = new SFSUser("player", new Session());
+        assertEquals(MoveRequest.class, new InheritedHandler().getRequestClass());
+
+        MoveHandler handler = new MoveHandler(false);
+        handler.handleClientRequest(user, move(1, 2));
+        handler.handleClientRequest(user, move(3, null));
+        assertEquals(2, handler.requests.size());
+        assertEquals(1, handler.requests.get(0).x.intValue());
+        assertNotSame(handler.requests.get(0), handler.requests.get(1));
+
+        MoveHandler reusing = new MoveHandler(true);
+        reusing.handleClientRequest(user, move(1, 2));
+        reusing.handleClientRequest(user, move(3, null));
+        assertSame(reusing.requests.get(0), reusing.requests.get(1));
+        assertEquals(2, reusing.ys.get(0).intValue());
+        assertNull("Reused request must be reset", reusing.ys.get(1));
+    }
+
+    @Test
+    public void testTypedResponsesAndNestedReuse() {
+        User user = new SFSUser("player", new Session());
+        EchoHandler handler = new EchoHandler();
+        handler.nested = new MoveHandler(true);
+        handler.handleClientRequest(user, move(7, 8));
+        assertEquals(1, handler.sent.size());
+        assertEquals(7, handler.sent.get(0).getInt("distance").intValue());
+        assertNotSame("Nested handling must not share the request in use",
+                handler.requests.get(0), handler.nested.requests.get(0));
+        assertEquals(7, handler.requests.get(0).x.intValue());
+    }
+
+    private static ISFSObject move(int x, Integer y) {
+        ISFSObject object = SFSObject.newInstance();
+        object.putInt("x", x);
+        if (y != null) {
+            object.putInt("y", y);
+        }
+        return object;
+    }
+}
@@ -6,10 +6,19 @@ import me.smecsia.common.serialize.SerializePostProcessor;
 import me.smecsia.common.serialize.SerializePreProcessor;
 import me.smecsia.common.serialize.TransportObject;
 import me.smecsia.common.serialize.annotations.*;
+import me.smecsia.smartfox.tools.annotations.Columnar;
+import me.smecsia.smartfox.tools.annotations.Compact;
+import me.smecsia.smartfox.tools.annotations.CompactEnum;
+import me.smecsia.smartfox.tools.annotations.EnumOrdinal;
+import me.smecsia.smartfox.tools.annotations.SerializeCreator;
+import me.smecsia.smartfox.tools.annotations.SerializeParam;
+import me.smecsia.smartfox.tools.annotations.SerializeView;
 import me.smecsia.smartfox.tools.common.AbstractTransportObject;
+import me.smecsia.smartfox.tools.error.MetadataException;
 import me.smecsia.smartfox.tools.util.SFSObjectUtil;
 import org.junit.Test;
 
+import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
@@ -216,6 +225,544 @@ public class SFSSerializerTest {
         assertEquals("testString", sObj.getSFSObject("subEntity").getUtfStringArray("stringsList").iterator().next());
     }
 
+    @Test
+    public void testSerializeFieldSet() {
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        SubEntity subEntity = new SubEntity(10L);
+        subEntity.setStringsList(Arrays.asList("testString"));
+        Entity entity = new Entity();
+        entity.setIntField(100);
+        entity.setStringField("string");
+        entity.setSubEntity(subEntity);
+        entity.setSubEntities(Arrays.asList(subEntity));
+
+        ISFSObject sObj = sfsSerializer.serialize(entity, FieldSet.of("intField", "subEntity", "subEntities.longField"));
+
+        assertEquals(100, sObj.getInt("intField").intValue());
+        assertNull(sObj.getUtfString("stringField"));
+        assertNull(sObj.getUtfString("changedName"));
+        assertEquals("testString", sObj.getSFSObject("subEntity").getUtfStringArray("stringsList").iterator().next());
+        ISFSObject subObj = (ISFSObject) sObj.getSFSArray("subEntities").iterator().next().getObject();
+        assertEquals(10L, subObj.getLong("longField").longValue());
+        assertFalse(subObj.containsKey("stringsList"));
+
+        FieldSet same = FieldSet.of("subEntities.longField", "subEntity", "intField");
+        assertEquals(FieldSet.of("intField", "subEntity", "subEntities.longField"), same);
+        assertEquals(FieldSet.of("intField", "subEntity", "subEntities.longField").hashCode(), same.hashCode());
+        assertFalse(same.equals(FieldSet.of("intField", "subEntity", "subEntities")));
+    }
+
+    @Test
+    public void testDeserializeFieldSet() {
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        ISFSObject subEntityObj = new SFSObject();
+        subEntityObj.putLong("longField", 20L);
+        subEntityObj.putUtfStringArray("stringsList", Arrays.asList("testString"));
+        ISFSObject entityObj = new SFSObject();
+        entityObj.putInt("intField", 10);
+        entityObj.putUtfString("stringField", "string");
+        entityObj.putSFSObject("subEntity", subEntityObj);
+
+        Entity entity = sfsSerializer.deserialize(Entity.class, entityObj, FieldSet.of("intField", "subEntity.longField"));
+
+        assertEquals(10, entity.getIntField().intValue());
+        assertNull(entity.getStringField());
+        assertEquals(20L, entity.getSubEntity().getLongField().longValue());
+        assertNull(entity.getSubEntity().getStringsList());
+    }
+
+    @Test
+    public void testCompactEnums() {
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        CompactEntity entity = new CompactEntity();
+        entity.color = Entity.Color.black;
+        entity.permission = CompactEntity.Permission.admin;
+        entity.colorsList = Arrays.asList(Entity.Color.black, Entity.Color.black, Entity.Color.white);
+        entity.permissions = EnumSet.of(CompactEntity.Permission.read, CompactEntity.Permission.admin);
+
+        ISFSObject sObj = sfsSerializer.serialize(entity);
+
+        assertEquals(SFSDataType.BYTE, sObj.get("color").getTypeId());
+        assertEquals(1, sObj.getByte("color").intValue());
+        assertEquals(70, sObj.getByte("permission").intValue());
+        assertEquals(SFSDataType.BYTE_ARRAY, sObj.get("colorsList").getTypeId());
+        assertEquals(SFSDataType.LONG_ARRAY, sObj.get("permissions").getTypeId());
+        assertEquals(Arrays.asList(1L << 5, 1L << (70 - 64)), new ArrayList<Long>(sObj.getLongArray("permissions")));
+
+        CompactEntity result = sfsSerializer.deserialize(CompactEntity.class, sObj);
+        assertEquals(entity.color, result.color);
+        assertEquals(entity.permission, result.permission);
+        assertEquals(entity.colorsList, result.colorsList);
+        assertEquals(entity.permissions, result.permissions);
+        assertTrue(result.permissions instanceof EnumSet);
+
+        ISFSObject namesObj = new SFSObject();
+        namesObj.putUtfString("color", "white");
+        namesObj.putUtfStringArray("colorsSet", Arrays.asList("white", "black"));
+        result = sfsSerializer.deserialize(CompactEntity.class, namesObj);
+        assertEquals(Entity.Color.white, result.color);
+        assertEquals(EnumSet.allOf(Entity.Color.class), result.colorsSet);
+    }
+
+    @Test
+    public void testCodecRegisteredAfterBind() {
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        SFSSerializer.Binding<GemEntity> binding = sfsSerializer.bind(GemEntity.class);
+        GemEntity entity = new GemEntity();
+        entity.gem = new Gem("ruby");
+        assertFalse(binding.serialize(entity).containsKey("gem"));
+
+        TypeCodecs.register(new TypeCodecs.StringTypeCodec<Gem>(Gem.class) {
+            @Override
+            protected Gem fromString(String value) {
+                return new Gem(value);
+            }
+        });
+        ISFSObject sObj = binding.serialize(entity);
+        assertEquals("ruby", sObj.getUtfString("gem"));
+        assertEquals("ruby", binding.deserialize(sObj).gem.color);
+    }
+
+    public static class Gem {
+        private final String color;
+
+        public Gem(String color) {
+            this.color = color;
+        }
+
+        @Override
+        public String toString() {
+            return color;
+        }
+    }
+
+    public static class GemEntity extends AbstractTransportObject {
+        private Gem gem;
+    }
+
+    @Test
+    public void testTypeCodecs() {
+        TypeCodecs.register(new TypeCodecs.StringTypeCodec<Money>(Money.class) {
+            @Override
+            protected Money fromString(String value) {
+                return new Money(Long.parseLong(value));
+            }
+        });
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        CodecEntity entity = new CodecEntity();
+        entity.id = UUID.randomUUID();
+        entity.amount = new BigDecimal("12345678901234567890.000001");
+        entity.price = new Money(150);
+
+        ISFSObject sObj = sfsSerializer.serialize(entity);
+        assertEquals(entity.id.toString(), sObj.getUtfString("id"));
+        assertEquals("12345678901234567890.000001", sObj.getUtfString("amount"));
+        assertEquals("150", sObj.getUtfString("price"));
+
+        CodecEntity result = sfsSerializer.deserialize(CodecEntity.class, sObj);
+        assertEquals(entity.id, result.id);
+        assertEquals(entity.amount, result.amount);
+        assertEquals(150, result.price.cents);
+    }
+
+    @Test
+    public void testNestedGenerics() {
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        GenericEntity entity = new GenericEntity();
+        entity.ints = Arrays.asList(1, 2, 3);
+        entity.doubles = new HashSet<Double>(Arrays.asList(1.5, 2.5));
+        entity.longsList = Arrays.asList(Arrays.asList(1L, 2L), Collections.<Long>emptyList());
+        entity.entitiesMap = new HashMap<String, List<SubEntity>>();
+        entity.entitiesMap.put("first", Arrays.asList(new SubEntity(1L), null));
+        entity.byId = new TreeMap<Integer, SubEntity>();
+        entity.byId.put(10, new SubEntity(10L));
+        entity.counters = new EnumMap<Entity.Color, Integer>(Entity.Color.class);
+        entity.counters.put(Entity.Color.black, 7);
+        entity.bytes = Arrays.asList((byte) 1, (byte) 2);
+
+        ISFSObject sObj = sfsSerializer.serialize(entity);
+        assertEquals(SFSDataType.INT_ARRAY, sObj.get("ints").getTypeId());
+        assertEquals(SFSDataType.BYTE_ARRAY, sObj.get("bytes").getTypeId());
+        assertEquals(SFSDataType.DOUBLE_ARRAY, sObj.get("doubles").getTypeId());
+        assertEquals(SFSDataType.LONG_ARRAY, sObj.getSFSArray("longsList").iterator().next().getTypeId());
+        assertEquals(10L, sObj.getSFSObject("byId").getSFSObject("10").getLong("longField").longValue());
+
+        GenericEntity result = sfsSerializer.deserialize(GenericEntity.class, sObj);
+        assertEquals(entity.ints, result.ints);
+        assertEquals(entity.doubles, result.doubles);
+        assertEquals(entity.longsList, result.longsList);
+        assertEquals(2, result.entitiesMap.get("first").size());
+        assertEquals(1L, result.entitiesMap.get("first").get(0).getLongField().longValue());
+        assertNull(result.entitiesMap.get("first").get(1));
+        assertTrue(result.byId instanceof TreeMap);
+        assertEquals(10L, result.byId.get(10).getLongField().longValue());
+        assertEquals(7, result.counters.get(Entity.Color.black).intValue());
+        assertEquals(entity.bytes, result.bytes);
+
+        entity.bytes = Arrays.asList((byte) 1, null);
+        try {
+            sfsSerializer.serialize(entity);
+            fail("Null items of the native arrays must be rejected!");
+        } catch (MetadataException e) {
+            assertTrue(e.getMessage().contains("'bytes'"));
+        }
+    }
+
+    public static class GenericEntity extends AbstractTransportObject {
+        private List<Integer> ints;
+        private List<Byte> bytes;
+        private Set<Double> doubles;
+        private List<List<Long>> longsList;
+        private Map<String, List<SubEntity>> entitiesMap;
+        private SortedMap<Integer, SubEntity> byId;
+        private Map<Entity.Color, Integer> counters;
+        private SubEntity subEntity;
+        private Date date;
+        private ImmutablePoint point;
+    }
+
+    @Test
+    public void testDeserializeWithCreator() {
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        ImmutableEntity entity = new ImmutableEntity("name", 5, new ImmutablePoint(1, 2));
+        entity.comment = "comment";
+
+        ISFSObject sObj = sfsSerializer.serialize(entity);
+        ImmutableEntity result = sfsSerializer.deserialize(ImmutableEntity.class, sObj);
+        assertEquals("name", result.name);
+        assertEquals(5, result.count);
+        assertEquals(1, result.point.x);
+        assertEquals(2, result.point.y);
+        assertEquals("comment", result.comment);
+
+        sObj.removeElement("count");
+        assertEquals(0, sfsSerializer.deserialize(ImmutableEntity.class, sObj).count);
+    }
+
+    public static class ImmutableEntity extends AbstractTransportObject {
+        private final String name;
+        private final int count;
+        private final ImmutablePoint point;
+        private String comment;
+        private List<Long> marks;
+
+        @SerializeCreator
+        public ImmutableEntity(@SerializeParam("name") String name, @SerializeParam("count") int count,
+                               @SerializeParam("point") ImmutablePoint point) {
+            this.name = name;
+            this.count = count;
+            this.point = point;
+        }
+    }
+
+    public static class ImmutablePoint extends AbstractTransportObject {
+        private final int x;
+        private final int y;
+
+        private ImmutablePoint(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @SerializeCreator
+        static ImmutablePoint of(@SerializeParam("x") int x, @SerializeParam("y") int y) {
+            return new ImmutablePoint(x, y);
+        }
+    }
+
+    @Test
+    public void testMissingFieldsPassthrough() {
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        ISFSObject sObj = new SFSObject();
+        sObj.putLong("id", 1L);
+        sObj.putByteArray("bytes", new byte[]{1, 2});
+        sObj.putShort("short", (short) 3);
+        sObj.putSFSObject("nested", new SFSObject());
+
+        PassthroughEntity entity = sfsSerializer.deserialize(PassthroughEntity.class, sObj);
+        assertEquals(1L, entity.id.longValue());
+        assertEquals(3, entity.unknown.size());
+        assertEquals(SFSDataType.SHORT, entity.unknown.get("short").getTypeId());
+
+        ISFSObject result = sfsSerializer.serialize(entity);
+        assertEquals(SFSDataType.BYTE_ARRAY, result.get("bytes").getTypeId());
+        assertEquals(SFSDataType.SHORT, result.get("short").getTypeId());
+        assertEquals(SFSDataType.SFS_OBJECT, result.get("nested").getTypeId());
+        assertEquals(1L, result.getLong("id").longValue());
+
+        PassthroughEntity copy = sfsSerializer.copy(entity);
+        assertNotSame(entity.unknown.get("nested").getObject(), copy.unknown.get("nested").getObject());
+        assertNotSame(entity.unknown.get("bytes").getObject(), copy.unknown.get("bytes").getObject());
+        assertTrue(Arrays.equals(new byte[]{1, 2}, (byte[]) copy.unknown.get("bytes").getObject()));
+
+        sObj = new SFSObject();
+        sObj.putLong("id", 2L);
+        entity = sfsSerializer.deserialize(PassthroughEntity.class, sObj);
+        assertSame(Collections.emptyMap(), entity.unknown);
+        entity.unknown = new HashMap<String, SFSDataWrapper>();
+        entity.unknown.put("short", new SFSDataWrapper(SFSDataType.SHORT, (short) 4));
+        assertEquals(SFSDataType.SHORT, sfsSerializer.serialize(entity).get("short").getTypeId());
+    }
+
+    public static class PassthroughEntity extends AbstractTransportObject {
+        private Long id;
+        @MissingSerializeFieldsStorage
+        private Map<String, SFSDataWrapper> unknown;
+    }
+
+    @Test
+    public void testCopy() {
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        GenericEntity entity = new GenericEntity();
+        entity.ints = Arrays.asList(1, 2);
+        entity.entitiesMap = new HashMap<String, List<SubEntity>>();
+        entity.entitiesMap.put("first", Arrays.asList(new SubEntity(1L)));
+        entity.subEntity = new SubEntity(5L);
+        entity.date = new Date();
+        entity.point = ImmutablePoint.of(1, 2);
+
+        GenericEntity copy = sfsSerializer.copy(entity);
+        assertEquals(entity.ints, copy.ints);
+        assertNotSame(entity.ints, copy.ints);
+        assertNotSame(entity.entitiesMap.get("first").get(0), copy.entitiesMap.get("first").get(0));
+        assertEquals(1L, copy.entitiesMap.get("first").get(0).getLongField().longValue());
+        assertNotSame(entity.subEntity, copy.subEntity);
+        assertEquals(5L, copy.subEntity.getLongField().longValue());
+        assertEquals(entity.date, copy.date);
+        assertNotSame(entity.date, copy.date);
+        assertNotSame(entity.point, copy.point);
+        assertEquals(2, copy.point.y);
+        assertNull(copy.doubles);
+
+        ImmutableEntity immutable = new ImmutableEntity("name", 5, ImmutablePoint.of(1, 2));
+        immutable.comment = "comment";
+        immutable.marks = new ArrayList<Long>(Arrays.asList(1L, 2L));
+        ImmutableEntity immutableCopy = sfsSerializer.copy(immutable);
+        assertNotSame(immutable, immutableCopy);
+        assertEquals("name", immutableCopy.name);
+        assertEquals(5, immutableCopy.count);
+        assertNotSame(immutable.point, immutableCopy.point);
+        assertEquals(1, immutableCopy.point.x);
+        assertEquals("comment", immutableCopy.comment);
+        assertEquals(immutable.marks, immutableCopy.marks);
+        assertNotSame(immutable.marks, immutableCopy.marks);
+    }
+
+    @Test
+    public void testSerializeView() {
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        ViewEntity entity = new ViewEntity();
+        entity.name = "player";
+        entity.gold = 100L;
+        entity.health = 50;
+        entity.child = new ViewEntity();
+        entity.child.name = "pet";
+        entity.child.gold = 10L;
+        entity.secret = "hidden";
+        entity.sub = new SubEntity(5L);
+
+        ISFSObject owner = sfsSerializer.serializeView(entity, "owner");
+        assertEquals(100L, owner.getLong("gold").longValue());
+        assertEquals(50, owner.getInt("health").intValue());
+        assertEquals(10L, owner.getSFSObject("child").getLong("gold").longValue());
+
+        ISFSObject opponent = sfsSerializer.serializeView(entity, "opponent");
+        assertEquals("player", opponent.getUtfString("name"));
+        assertFalse(opponent.containsKey("gold"));
+        assertFalse(opponent.containsKey("health"));
+        assertEquals("pet", opponent.getSFSObject("child").getUtfString("name"));
+        assertFalse(opponent.getSFSObject("child").containsKey("gold"));
+        assertFalse("Fields without @SerializeView must be excluded from the views", opponent.containsKey("secret"));
+        assertEquals(5L, opponent.getSFSObject("sub").getLong("longField").longValue());
+
+        ISFSObject team = sfsSerializer.serializeView(entity, "team");
+        assertFalse(team.containsKey("gold"));
+        assertFalse(team.containsKey("secret"));
+        assertEquals(50, team.getInt("health").intValue());
+
+        assertEquals("hidden", sfsSerializer.serialize(entity).getUtfString("secret"));
+        assertEquals("hidden", sfsSerializer.serialize(entity, null).getUtfString("secret"));
+    }
+
+    public static class ViewEntity extends AbstractTransportObject {
+        @SerializeView(SerializeView.ALL)
+        private String name;
+        @SerializeView("owner")
+        private Long gold;
+        @SerializeView({"owner", "team"})
+        private Integer health;
+        @SerializeView(SerializeView.ALL)
+        private ViewEntity child;
+        @SerializeView(SerializeView.ALL)
+        private SubEntity sub;
+        private String secret;
+    }
+
+    @Test
+    public void testCompactFields() {
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        CompactFieldsEntity entity = new CompactFieldsEntity();
+        entity.level = 5;
+        entity.score = 100000L;
+        entity.big = Long.MAX_VALUE;
+
+        ISFSObject sObj = sfsSerializer.serialize(entity);
+        assertFalse(sObj.containsKey("name"));
+        assertFalse(sObj.containsKey("active"));
+        assertFalse(sObj.containsKey("count"));
+        assertEquals(SFSDataType.BYTE, sObj.get("level").getTypeId());
+        assertEquals(SFSDataType.INT, sObj.get("score").getTypeId());
+        assertEquals(SFSDataType.LONG, sObj.get("big").getTypeId());
+
+        CompactFieldsEntity result = sfsSerializer.deserialize(CompactFieldsEntity.class, sObj);
+        assertEquals("", result.name);
+        assertTrue(result.active);
+        assertEquals(0, result.count);
+        assertEquals(5, result.level);
+        assertEquals(100000L, result.score);
+        assertEquals(Long.MAX_VALUE, result.big.longValue());
+    }
+
+    @Compact
+    public static class CompactFieldsEntity extends AbstractTransportObject {
+        private String name = "";
+        private boolean active = true;
+        private int count;
+        private int level;
+        private long score;
+        private Long big;
+    }
+
+    @Test
+    public void testColumnar() {
+        SFSSerializer sfsSerializer = new SFSSerializer();
+        ColumnarEntity entity = new ColumnarEntity();
+        entity.units = new ArrayList<Unit>();
+        for (int i = 0; i < 10; ++i) {
+            Unit unit = new Unit();
+            unit.hp = i;
+            unit.kind = (i % 2 == 0) ? "archer" : "knight";
+            unit.color = Entity.Color.values()[i % 2];
+            unit.score = (i == 3) ? null : (long) i * 1000;
+            unit.alive = i > 5;
+            unit.sub = new SubEntity((long) i);
+            unit.level = i * 10;
+            unit.rank = Entity.Color.values()[(i + 1) % 2];
+            entity.units.add(unit);
+        }
+        entity.units.add(4, null);
+
+        ISFSObject sObj = sfsSerializer.serialize(entity);
+        ISFSObject columnar = sObj.getSFSObject("units");
+        assertEquals(11, columnar.getInt("n").intValue());
+        assertEquals(SFSDataType.INT_ARRAY, columnar.getSFSObject("c").get("hp").getTypeId());
+        assertEquals(SFSDataType.BYTE_ARRAY, columnar.getSFSObject("c").get("level").getTypeId());
+        assertEquals(SFSDataType.BYTE_ARRAY, columnar.getSFSObject("c").get("rank").getTypeId());
+        assertFalse(columnar.getSFSObject("d").containsKey("rank"));
+        assertEquals(Arrays.asList("archer", "knight"),
+                new ArrayList<String>(columnar.getSFSObject("d").getUtfStringArray("kind")));
+        assertTrue(columnar.getSFSObject("z").containsKey("score"));
+
+        ColumnarEntity result = sfsSerializer.deserialize(ColumnarEntity.class, sObj);
+        assertEquals(11, result.units.size());
+        assertNull(result.units.get(4));
+        result.units.remove(4);
+        entity.units.remove(4);
+        for (int i = 0; i < 10; ++i) {
+            Unit unit = result.units.get(i);
+            assertEquals(i, unit.hp);
+            assertEquals(entity.units.get(i).kind, unit.kind);
+            assertEquals(entity.units.get(i).color, unit.color);
+            assertEquals(entity.units.get(i).score, unit.score);
+            assertEquals(i > 5, unit.alive);
+            assertEquals(i, unit.sub.getLongField().intValue());
+            assertEquals(i * 10, unit.level);
+            assertEquals(entity.units.get(i).rank, unit.rank);
+        }
+
+        ISFSObject projected = sfsSerializer.serialize(entity, FieldSet.of("units.hp"));
+        assertEquals(1, projected.getSFSObject("units").getSFSObject("c").size());
+        assertFalse(projected.getSFSObject("units").containsKey("r"));
+
+        HeroUnit hero = new HeroUnit();
+        ((Unit) hero).hp = 100;
+        hero.title = "king";
+        entity.units.add(hero);
+        ISFSObject mixed = sfsSerializer.serialize(entity);
+        assertEquals(SFSDataType.SFS_ARRAY, mixed.get("units").getTypeId());
+        assertEquals("king", mixed.getSFSArray("units").getSFSObject(10).getUtfString("title"));
+        assertEquals(11, sfsSerializer.deserialize(ColumnarEntity.class, mixed).units.size());
+    }
+
+    @Test
+    public void testColumnarRequiresDefaultConstructor() {
+        try {
+            new SFSSerializer().serialize(new ColumnarCreatorEntity());
+            fail("Columnar items with @SerializeCreator must be rejected!");
+        } catch (MetadataException ignored) {
+        }
+    }
+
+    public static class ColumnarEntity extends AbstractTransportObject {
+        @Columnar
+        private List<Unit> units;
+    }
+
+    public static class ColumnarCreatorEntity extends AbstractTransportObject {
+        @Columnar
+        private List<ImmutablePoint> points;
+    }
+
+    public static class HeroUnit extends Unit {
+        private String title;
+    }
+
+    public static class Unit extends AbstractTransportObject {
+        private int hp;
+        private String kind;
+        private Entity.Color color;
+        private Long score;
+        private boolean alive;
+        private SubEntity sub;
+        @Compact
+        private int level;
+        @CompactEnum
+        private Entity.Color rank;
+    }
+
+    public static class Money {
+        private final long cents;
+
+        public Money(long cents) {
+            this.cents = cents;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(cents);
+        }
+    }
+
+    public static class CodecEntity extends AbstractTransportObject {
+        private UUID id;
+        private BigDecimal amount;
+        private Money price;
+    }
+
+    @CompactEnum
+    public static class CompactEntity extends AbstractTransportObject {
+        public static enum Permission {
+            @EnumOrdinal(5) read,
+            @EnumOrdinal(0) write,
+            @EnumOrdinal(70) admin
+        }
+
+        private Entity.Color color;
+        private Permission permission;
+        private List<Entity.Color> colorsList;
+        private Set<Entity.Color> colorsSet;
+        private Set<Permission> permissions;
+    }
 
     public static class SubEntity extends AbstractTransportObject {
 
@@ -0,0 +1,312 @@
+package me.smecsia.smartfox.tools.service;
+
+import com.smartfoxserver.bitswarm.sessions.Session;
+import com.smartfoxserver.v2.entities.SFSUser;
+import com.smartfoxserver.v2.entities.User;
+import me.smecsia.smartfox.tools.annotations.Security;
+import me.smecsia.smartfox.tools.error.AuthUnavailableException;
+import me.smecsia.smartfox.tools.error.UnauthorizedException;
+import me.smecsia.smartfox.tools.service.BasicAuthService.AuthStrategy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class BasicAuthServiceTest {
+
+    public static class DenyAllAuthService extends BasicAuthService {
+        @Override
+        public void check(User user) throws UnauthorizedException {
+            throw new UnauthorizedException("denied");
+        }
+    }
+
+    public static class CountingAuthService extends BasicAuthService {
+        static volatile int checks;
+        static volatile boolean denied;
+
+        @Override
+        public void check(User user) throws UnauthorizedException {
+            ++checks;
+            if (denied) {
+                throw new UnauthorizedException("denied");
+            }
+        }
+    }
+
+    public static class ManualAsyncAuthService extends AbstractAsyncAuthService {
+        final List<AuthCallback> pending = new ArrayList<AuthCallback>();
+
+        public ManualAsyncAuthService() {
+            super(200, 1);
+        }
+
+        @Override
+        protected synchronized void doCheckAsync(User user, AuthCallback callback) {
+            pending.add(callback);
+        }
+    }
+
+    public static class RecordingCallback implements AuthCallback {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile UnauthorizedException error;
+
+        @Override
+        public void authorized(User user) {
+            done.countDown();
+        }
+
+        @Override
+        public void unauthorized(User user, UnauthorizedException error) {
+            this.error = error;
+            done.countDown();
+        }
+    }
+
+    public static class CachedAsyncAuthService extends ManualAsyncAuthService {
+    }
+
+    @Security(authService = ManualAsyncAuthService.class)
+    public static class AsyncHandler {
+    }
+
+    @Security(authService = CachedAsyncAuthService.class, cacheTtl = 60000)
+    public static class CachedAsyncHandler {
+    }
+
+    @Security(authRequired = false, permissions = {"chat.read", "chat.write"})
+    public static class PermissionHandler {
+    }
+
+    @Security(authService = CountingAuthService.class, cacheTtl = 60000)
+    public static class CachedHandler {
+    }
+
+    @Security(authService = DenyAllAuthService.class)
+    public static class SecuredHandler {
+    }
+
+    public static class SecuredSubHandler extends SecuredHandler {
+    }
+
+    public static class PublicHandler {
+    }
+
+    @Test
+    public void testStrategyIsInherited() {
+        AuthStrategy strategy = BasicAuthService.getAuthStrategy(SecuredSubHandler.class);
+        assertTrue(strategy.isAuthRequired());
+        assertSame(strategy, BasicAuthService.getAuthStrategy(SecuredSubHandler.class));
+        assertSame(strategy.getService(), BasicAuthService.getAuthStrategy(SecuredHandler.class).getService());
+        try {
+            strategy.check(null);
+            fail("Check must fail for the secured handler!");
+        } catch (UnauthorizedException ignored) {
+        }
+    }
+
+    @Test
+    public void testPublicHandler() {
+        AuthStrategy strategy = BasicAuthService.getAuthStrategy(PublicHandler.class);
+        assertFalse(strategy.isAuthRequired());
+        strategy.check(null);
+    }
+
+    @Test
+    public void testCachedDecisions() {
+        AuthStrategy strategy = BasicAuthService.getAuthStrategy(CachedHandler.class);
+        User user = newUser("user");
+        CountingAuthService.checks = 0;
+        CountingAuthService.denied = false;
+        strategy.check(user);
+        strategy.check(user);
+        assertEquals(1, CountingAuthService.checks);
+
+        CountingAuthService.denied = true;
+        strategy.check(user);
+        BasicAuthService.invalidate(user);
+        for (int i = 0; i < 2; ++i) {
+            try {
+                strategy.check(user);
+                fail("Check must fail after the invalidation!");
+            } catch (UnauthorizedException ignored) {
+            }
+        }
+        assertEquals(2, CountingAuthService.checks);
+
+        CountingAuthService.denied = false;
+        strategy.check(newUser("other"));
+        assertEquals(3, CountingAuthService.checks);
+    }
+
+    @Test
+    public void testDecisionCacheIsBounded() {
+        AuthDecisionCache cache = new AuthDecisionCache(new BasicAuthService());
+        cache.configure(60000, 10);
+        for (int i = 0; i < 100; ++i) {
+            cache.check(newUser("user" + i), Long.MAX_VALUE);
+        }
+        assertTrue(cache.size() <= 10);
+    }
+
+    @Test
+    public void testDecisionCacheSkipsNullUser() {
+        AuthDecisionCache cache = new AuthDecisionCache(new BasicAuthService());
+        cache.configure(60000, 10);
+        cache.check(null, Long.MAX_VALUE);
+        assertNull(cache.lookup(null, Long.MAX_VALUE));
+        cache.invalidate(null);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testDecisionCacheKeepsInvalidation() {
+        AuthDecisionCache cache = new AuthDecisionCache(new BasicAuthService());
+        cache.configure(60000, 10);
+        User user = newUser("invalidated");
+        long startedBefore = System.nanoTime();
+        cache.invalidate(user);
+        cache.record(user, startedBefore, null);
+        assertNull("Check started before the invalidation must not be cached", cache.lookup(user, Long.MAX_VALUE));
+
+        long startedAfter = System.nanoTime() + 1;
+        cache.record(user, startedAfter + 1, new UnauthorizedException("denied"));
+        cache.record(user, startedAfter, null);
+        AuthDecisionCache.Decision decision = cache.lookup(user, Long.MAX_VALUE);
+        assertNotNull(decision);
+        assertEquals("Older check must not replace the newer decision", "denied", decision.error);
+    }
+
+    @Test
+    public void testAsyncCheck() throws Exception {
+        AuthStrategy strategy = BasicAuthService.getAuthStrategy(AsyncHandler.class);
+        assertTrue(strategy.isAsync());
+        ManualAsyncAuthService service = (ManualAsyncAuthService) strategy.getService();
+        User user = newUser("async");
+
+        RecordingCallback first = new RecordingCallback();
+        strategy.checkAsync(user, first);
+        assertEquals(1, first.done.getCount());
+
+        RecordingCallback rejected = new RecordingCallback();
+        strategy.checkAsync(user, rejected);
+        assertNotNull("Checks over the limit must be rejected", rejected.error);
+
+        service.pending.get(0).authorized(user);
+        service.pending.get(0).unauthorized(user, new UnauthorizedException("late"));
+        assertTrue(first.done.await(1, TimeUnit.SECONDS));
+        assertNull(first.error);
+        assertEquals(1, service.getAvailableChecks());
+
+        RecordingCallback timedOut = new RecordingCallback();
+        strategy.checkAsync(user, timedOut);
+        assertTrue(timedOut.done.await(2, TimeUnit.SECONDS));
+        assertNotNull(timedOut.error);
+        assertEquals(1, service.getAvailableChecks());
+    }
+
+    @Test
+    public void testFailedAsyncCheckIsNotCached() throws Exception {
+        AuthStrategy strategy = BasicAuthService.getAuthStrategy(CachedAsyncHandler.class);
+        CachedAsyncAuthService service = (CachedAsyncAuthService) strategy.getService();
+        User user = newUser("cachedAsync");
+
+        RecordingCallback timedOut = new RecordingCallback();
+        strategy.checkAsync(user, timedOut);
+        assertTrue(timedOut.done.await(2, TimeUnit.SECONDS));
+        assertTrue(timedOut.error instanceof AuthUnavailableException);
+
+        RecordingCallback retried = new RecordingCallback();
+        strategy.checkAsync(user, retried);
+        assertEquals("Timed out check must not be cached", 2, service.pending.size());
+        service.pending.get(1).unauthorized(user, new UnauthorizedException("denied"));
+        assertEquals("denied", retried.error.getMessage());
+
+        RecordingCallback cached = new RecordingCallback();
+        strategy.checkAsync(user, cached);
+        assertEquals(2, service.pending.size());
+        assertEquals("denied", cached.error.getMessage());
+    }
+
+    @Test
+    public void testPermissions() {
+        AuthStrategy strategy = BasicAuthService.getAuthStrategy(PermissionHandler.class);
+        final List<String> granted = new ArrayList<String>(Arrays.asList("chat.read"));
+        Permissions.setLoader(new PermissionLoader() {
+            @Override
+            public Collection<String> loadPermissions(User user) {
+                return granted;
+            }
+        });
+        User user = newUser("writer");
+        try {
+            strategy.check(user);
+            fail("Check must fail without the chat.write permission!");
+        } catch (UnauthorizedException ignored) {
+        }
+
+        granted.add("chat.write");
+        try {
+            strategy.check(user);
+            fail("Granted permissions must be cached until the invalidation!");
+        } catch (UnauthorizedException ignored) {
+        }
+        BasicAuthService.invalidate(user);
+        strategy.check(user);
+
+        assertArrayEquals(Permissions.compile(Arrays.asList("chat.write", "chat.read")),
+                Permissions.compile(Arrays.asList("chat.read", "chat.write")));
+    }
+
+    @Test
+    public void testInvalidationDuringPermissionLoading() throws Exception {
+        final List<String> granted = new ArrayList<String>(Arrays.asList("chat.read", "chat.write"));
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch invalidated = new CountDownLatch(1);
+        Permissions.setLoader(new PermissionLoader() {
+            @Override
+            public Collection<String> loadPermissions(User user) {
+                List<String> loaded = new ArrayList<String>(granted);
+                if (loading.getCount() > 0) {
+                    loading.countDown();
+                    try {
+                        invalidated.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return loaded;
+            }
+        });
+        final long[] required = Permissions.compile(Arrays.asList("chat.write"));
+        final User user = newUser("revoked");
+        Thread check = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Permissions.getGranted(user);
+            }
+        });
+        check.start();
+        assertTrue(loading.await(1, TimeUnit.SECONDS));
+        granted.remove("chat.write");
+        BasicAuthService.invalidate(user);
+        invalidated.countDown();
+        check.join(1000);
+
+        assertFalse("Permissions loaded before the invalidation must not be cached",
+                Permissions.isGranted(user, required));
+    }
+
+    private static User newUser(String name) {
+        return new SFSUser(name, new Session());
+    }
+}
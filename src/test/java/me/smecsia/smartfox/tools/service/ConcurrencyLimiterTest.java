@@ -0,0 +1,76 @@
+package me.smecsia.smartfox.tools.service;
+
+import me.smecsia.smartfox.tools.annotations.HandlerPriority;
+import me.smecsia.smartfox.tools.service.ConcurrencyLimiter.Permit;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static me.smecsia.smartfox.tools.annotations.HandlerPriority.Level.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class ConcurrencyLimiterTest {
+
+    @HandlerPriority(LOW)
+    public static class ChatHandler {
+    }
+
+    public static class MoveHandler {
+    }
+
+    @Test
+    public void testPriorities() {
+        assertEquals(LOW, ConcurrencyLimiter.getPriority(ChatHandler.class));
+        assertEquals(NORMAL, ConcurrencyLimiter.getPriority(MoveHandler.class));
+        assertSame(Permit.NONE, ConcurrencyLimiter.admit(LOW));
+    }
+
+    @Test
+    public void testLowPriorityIsShedFirst() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100, 1000);
+        List<Permit> permits = new ArrayList<Permit>();
+        for (int i = 0; i < 5; ++i) {
+            permits.add(limiter.acquire(LOW));
+        }
+        assertNull("Low priority requests get half of the limit", limiter.acquire(LOW));
+        for (int i = 0; i < 3; ++i) {
+            assertNotNull(limiter.acquire(NORMAL));
+        }
+        assertNull(limiter.acquire(NORMAL));
+        assertNotNull(limiter.acquire(HIGH));
+        assertNotNull(limiter.acquire(HIGH));
+        assertNull(limiter.acquire(HIGH));
+        assertNotNull("Critical requests are never shed", limiter.acquire(CRITICAL));
+        assertEquals(3, limiter.getShed());
+
+        permits.get(0).release();
+        assertEquals(10, limiter.getInFlight());
+        assertEquals(10.0, limiter.getLimit(), 0.0);
+    }
+
+    @Test
+    public void testAdaptiveLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 2, 8, 5);
+        for (int i = 0; i < 100; ++i) {
+            List<Permit> permits = new ArrayList<Permit>();
+            Permit permit;
+            while ((permit = limiter.acquire(HIGH)) != null) {
+                permits.add(permit);
+            }
+            for (Permit p : permits) {
+                p.complete();
+            }
+        }
+        assertEquals("Fast requests grow the limit", 8.0, limiter.getLimit(), 0.0);
+
+        Thread.sleep(10);
+        Permit slow = limiter.acquire(HIGH);
+        Thread.sleep(10);
+        slow.complete();
+        assertEquals("Slow requests shrink the limit", 8 * 0.9, limiter.getLimit(), 1e-9);
+    }
+}
@@ -0,0 +1,95 @@
+package me.smecsia.smartfox.tools.service;
+
+import me.smecsia.smartfox.tools.annotations.Offload;
+import me.smecsia.smartfox.tools.service.HandlerExecutors.Dispatcher;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class HandlerExecutorsTest {
+
+    @Offload(executor = "single")
+    public static class RejectingHandler {
+    }
+
+    @Offload(executor = "single", onRejected = Offload.Rejection.CALLER_RUNS)
+    public static class CallerRunsHandler {
+    }
+
+    @Offload(timeout = 100)
+    public static class TimedHandler {
+    }
+
+    public static class InlineHandler {
+    }
+
+    @After
+    public void tearDown() {
+        HandlerExecutors.shutdown();
+    }
+
+    @Test
+    public void testInlineHandler() {
+        assertNull(HandlerExecutors.getDispatcher(InlineHandler.class));
+        assertNotNull(HandlerExecutors.getDispatcher(TimedHandler.class));
+    }
+
+    @Test
+    public void testRejection() throws Exception {
+        HandlerExecutors.register("single", HandlerExecutors.newBoundedExecutor(1, 1));
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        };
+        Dispatcher dispatcher = HandlerExecutors.getDispatcher(RejectingHandler.class);
+        dispatcher.dispatch(blocking);
+        dispatcher.dispatch(blocking);
+        try {
+            dispatcher.dispatch(blocking);
+            fail("Saturated executor must reject the task!");
+        } catch (RejectedExecutionException ignored) {
+        }
+
+        final Thread caller = Thread.currentThread();
+        final AtomicBoolean inline = new AtomicBoolean();
+        HandlerExecutors.getDispatcher(CallerRunsHandler.class).dispatch(new Runnable() {
+            @Override
+            public void run() {
+                inline.set(Thread.currentThread() == caller);
+            }
+        });
+        assertTrue(inline.get());
+        release.countDown();
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        HandlerExecutors.getDispatcher(TimedHandler.class).dispatch(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+    }
+}
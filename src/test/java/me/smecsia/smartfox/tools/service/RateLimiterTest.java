@@ -0,0 +1,68 @@
+package me.smecsia.smartfox.tools.service;
+
+import com.smartfoxserver.bitswarm.sessions.Session;
+import com.smartfoxserver.v2.entities.SFSUser;
+import com.smartfoxserver.v2.entities.User;
+import me.smecsia.smartfox.tools.annotations.RateLimit;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class RateLimiterTest {
+
+    private static final Runnable NOTHING = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @RateLimit(perSecond = 1, burst = 3, action = RateLimit.Action.DROP)
+    public static class DroppingHandler {
+    }
+
+    @RateLimit(perSecond = 20, burst = 1, action = RateLimit.Action.DELAY)
+    public static class DelayingHandler {
+    }
+
+    public static class UnlimitedHandler {
+    }
+
+    @Test
+    public void testBurstAndDrop() {
+        assertNull(RateLimiter.get(UnlimitedHandler.class));
+        RateLimiter limiter = RateLimiter.get(DroppingHandler.class);
+        User user = new SFSUser("flooder", new Session());
+        for (int i = 0; i < 3; ++i) {
+            assertTrue(limiter.tryAcquire(user, NOTHING));
+        }
+        assertFalse(limiter.tryAcquire(user, NOTHING));
+        assertFalse(limiter.tryAcquire(user, NOTHING));
+        assertEquals(2, limiter.getDropped());
+
+        User other = new SFSUser("other", new Session());
+        assertTrue("Users must have separate buckets", limiter.tryAcquire(other, NOTHING));
+        assertEquals(4, limiter.getAllowed());
+    }
+
+    @Test
+    public void testDelay() throws Exception {
+        RateLimiter limiter = RateLimiter.get(DelayingHandler.class);
+        User user = new SFSUser("user", new Session());
+        final CountDownLatch handled = new CountDownLatch(1);
+        assertTrue(limiter.tryAcquire(user, NOTHING));
+        assertFalse(limiter.tryAcquire(user, new Runnable() {
+            @Override
+            public void run() {
+                handled.countDown();
+            }
+        }));
+        assertEquals(1, limiter.getDelayed());
+        assertTrue(handled.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,133 @@
+package me.smecsia.smartfox.tools.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class SerialLanesTest {
+
+    private static final int KEYS = 8;
+    private static final int TASKS = 1000;
+
+    @Test
+    public void testTasksOfKeyAreOrdered() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final SerialLanes lanes = new SerialLanes(executor, KEYS * TASKS, TASKS);
+            final List<List<Integer>> results = new ArrayList<List<Integer>>();
+            for (int k = 0; k < KEYS; ++k) {
+                results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+            }
+            final CountDownLatch done = new CountDownLatch(KEYS * TASKS);
+            List<Thread> submitters = new ArrayList<Thread>();
+            for (int k = 0; k < KEYS; ++k) {
+                final int key = k;
+                submitters.add(new Thread() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < TASKS; ++i) {
+                            final int value = i;
+                            lanes.execute(key, new Runnable() {
+                                @Override
+                                public void run() {
+                                    results.get(key).add(value);
+                                    done.countDown();
+                                }
+                            });
+                        }
+                    }
+                });
+            }
+            for (Thread submitter : submitters) {
+                submitter.start();
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            for (List<Integer> result : results) {
+                assertEquals(TASKS, result.size());
+                for (int i = 0; i < TASKS; ++i) {
+                    assertEquals(i, (int) result.get(i));
+                }
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals("Idle lanes must be removed", 0, lanes.getActiveLanes());
+            assertEquals(KEYS * TASKS, lanes.getAvailableCapacity());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSaturatedLanesReject() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(3);
+            Runnable blocking = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                }
+            };
+            SerialLanes lanes = new SerialLanes(executor, 3, 2);
+            lanes.execute("first", blocking);
+            lanes.execute("first", blocking);
+            try {
+                lanes.execute("first", blocking);
+                fail("Task over the lane capacity must be rejected!");
+            } catch (RejectedExecutionException ignored) {
+            }
+            lanes.execute("second", blocking);
+            try {
+                lanes.execute("third", blocking);
+                fail("Task over the total capacity must be rejected!");
+            } catch (RejectedExecutionException ignored) {
+            }
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRejectedIdleLaneIsNotDrainedByCaller() {
+        final Thread caller = Thread.currentThread();
+        SerialLanes lanes = new SerialLanes(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("saturated");
+            }
+        });
+        try {
+            lanes.execute("key", new Runnable() {
+                @Override
+                public void run() {
+                    assertNotSame(caller, Thread.currentThread());
+                }
+            });
+            fail("Task of the rejected idle lane must be rejected!");
+        } catch (RejectedExecutionException ignored) {
+        }
+        assertEquals(0, lanes.getActiveLanes());
+        assertEquals(SerialLanes.DEFAULT_CAPACITY, lanes.getAvailableCapacity());
+    }
+}
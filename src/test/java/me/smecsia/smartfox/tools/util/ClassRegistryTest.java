@@ -0,0 +1,73 @@
+package me.smecsia.smartfox.tools.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class ClassRegistryTest {
+
+    private static class CountingRegistry extends ClassRegistry<String> {
+        final AtomicInteger computations = new AtomicInteger();
+
+        CountingRegistry() {
+            super(false);
+        }
+
+        @Override
+        protected String computeValue(Class<?> type) {
+            computations.incrementAndGet();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            }
+            return type.getName();
+        }
+    }
+
+    @Test
+    public void testComputeOnceConcurrently() throws Exception {
+        final CountingRegistry registry = new CountingRegistry();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; ++i) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                    assertEquals(String.class.getName(), registry.get(String.class));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, registry.computations.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        CountingRegistry registry = new CountingRegistry();
+        String value = registry.get(ClassRegistryTest.class);
+        assertSame(value, registry.get(ClassRegistryTest.class));
+        registry.invalidate(String.class.getClassLoader());
+        assertEquals(1, registry.computations.get());
+        registry.invalidate(ClassRegistryTest.class.getClassLoader());
+        registry.get(ClassRegistryTest.class);
+        assertEquals(2, registry.computations.get());
+    }
+}
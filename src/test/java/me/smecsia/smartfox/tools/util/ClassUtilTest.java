@@ -2,10 +2,11 @@ package me.smecsia.smartfox.tools.util;
 
 import org.junit.Test;
 
-import static junit.framework.Assert.assertEquals;
-import static junit.framework.Assert.fail;
-import static me.smecsia.smartfox.tools.util.ClassUtil.invokeAnyMethod;
-import static me.smecsia.smartfox.tools.util.ClassUtil.setPrivateField;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import static junit.framework.Assert.*;
+import static me.smecsia.smartfox.tools.util.ClassUtil.*;
 
 /**
  * @author Ilya Sadykov
@@ -33,6 +34,44 @@ public class ClassUtilTest {
         }
     }
 
+    @Test
+    public void testGetMembersInClassHierarchy() {
+        Field[] fields = getFieldsInClassHierarchy(SubTestClass.class);
+        assertEquals(3, fields.length);
+        assertEquals("subField", fields[0].getName());
+        Method[] methods = getMethodsInClassHierarchy(SubTestClass.class);
+        assertEquals("subMethod", methods[0].getName());
+    }
+
+    @Test
+    public void testInvokeInheritedMembers() throws Exception {
+        SubTestClass testObject = new SubTestClass();
+        assertEquals("returnedValue", invokeAnyMethod(testObject, "someMethod", "arg0", 10, new Person("Mike")));
+        setPrivateField(testObject, "privateField", "inherited");
+        assertEquals("inherited", ((TestClass) testObject).privateField);
+        assertSame(findMethod(SubTestClass.class, "subMethod"), findMethod(SubTestClass.class, "subMethod"));
+        assertNull(findMethod(SubTestClass.class, "missingMethod"));
+        assertNull(findField(SubTestClass.class, "missingField"));
+
+        Class<?>[] argTypes = {String.class, Integer.class};
+        Method method = findMethod(SubTestClass.class, "someMethod", argTypes);
+        argTypes[1] = Long.class;
+        assertSame("Cached key must not share the caller's array",
+                method, findMethod(SubTestClass.class, "someMethod", String.class, Integer.class));
+        try {
+            invokeAnyMethod(testObject, "missingMethod");
+            fail("Missing method must not be invoked!");
+        } catch (NoSuchMethodException ignored) {
+        }
+    }
+
+    private static class SubTestClass extends TestClass {
+        private String subField;
+
+        private void subMethod() {
+        }
+    }
+
     private static class TestClass {
         private static String privateStatic = "notSet";
         private String privateField = "notSet";
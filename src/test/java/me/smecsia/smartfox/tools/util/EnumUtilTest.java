@@ -1,9 +1,11 @@
 package me.smecsia.smartfox.tools.util;
 
+import me.smecsia.smartfox.tools.annotations.EnumAlias;
 import org.junit.Test;
 
 import static me.smecsia.smartfox.tools.util.EnumUtil.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -17,6 +19,7 @@ public class EnumUtilTest {
 
     public static enum TestEnum {
         first,
+        @EnumAlias({"2nd", "Two"})
         second
     }
 
@@ -31,6 +34,20 @@ public class EnumUtilTest {
         assertEquals(TestEnum.first, fromString(TestEnum.class, "first"));
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromStringWrongValue() {
+        fromString(TestEnum.class, "First");
+    }
+
+    @Test
+    public void testFromAlias() {
+        assertEquals(TestEnum.first, fromAlias(TestEnum.class, "FIRST"));
+        assertEquals(TestEnum.second, fromAlias(TestEnum.class, "2nd"));
+        assertEquals(TestEnum.second, fromAlias(TestEnum.class, "two"));
+        assertEquals(TestEnum.second, fromAlias(TestEnum.class, "second"));
+        assertFalse(enumContains(TestEnum.class, "2nd"));
+    }
+
     @Test
     public void testRandom() {
         for (int i = 0; i < 100; ++i) {
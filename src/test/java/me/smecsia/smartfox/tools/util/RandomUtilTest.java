@@ -0,0 +1,62 @@
+package me.smecsia.smartfox.tools.util;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static me.smecsia.smartfox.tools.util.RandomUtil.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Ilya Sadykov
+ */
+public class RandomUtilTest {
+
+    @Test
+    public void testRandomInt() {
+        for (int i = 0; i < 1000; ++i) {
+            int value = randomInt(7);
+            assertTrue(value >= 0 && value < 7);
+        }
+    }
+
+    @Test
+    public void testSeededRandom() {
+        FastRandom first = seededRandom(42L, 1);
+        FastRandom second = seededRandom(42L, 1);
+        FastRandom otherStream = seededRandom(42L, 2);
+        boolean differs = false;
+        for (int i = 0; i < 100; ++i) {
+            long value = first.nextLong();
+            assertEquals(value, second.nextLong());
+            differs |= value != otherStream.nextLong();
+        }
+        assertTrue(differs);
+        for (int i = 0; i < 1000; ++i) {
+            double value = first.nextDouble();
+            assertTrue(value >= 0 && value < 1);
+        }
+    }
+
+    @Test
+    public void testRandomString() {
+        Set<String> generated = new HashSet<String>();
+        for (int i = 0; i < 1000; ++i) {
+            String token = randomString();
+            assertEquals(26, token.length());
+            assertTrue(token.matches("[0-9a-v]+"));
+            assertTrue(generated.add(token));
+        }
+    }
+
+    @Test
+    public void testTokenGenerator() {
+        TokenGenerator generator = new TokenGenerator(TokenGenerator.Encoding.HEX, 128);
+        assertEquals(32, generator.getLength());
+        for (String token : generator.next(100)) {
+            assertTrue(token.matches("[0-9a-f]{32}"));
+        }
+        assertEquals(22, new TokenGenerator(TokenGenerator.Encoding.BASE64_URL, 128).next().length());
+    }
+}
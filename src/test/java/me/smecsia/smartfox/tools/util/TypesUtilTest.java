@@ -4,6 +4,7 @@ import org.junit.Test;
 
 import static me.smecsia.smartfox.tools.util.TypesUtil.*;
 import static me.smecsia.smartfox.tools.util.TypesUtil.isString;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -48,4 +49,16 @@ public class TypesUtilTest {
         assertTrue(isLong(Long.TYPE));
         assertTrue(isLong(Long.class));
     }
+
+    @Test
+    public void testClassify() throws Exception {
+        assertEquals(ValueType.INT, classify(Integer.TYPE));
+        assertEquals(ValueType.LONG, classify(Long.class));
+        assertEquals(ValueType.STRING, classify(String.class));
+        assertEquals(ValueType.DATE, classify(java.sql.Timestamp.class));
+        assertEquals(ValueType.ENUM, classify(Thread.State.class));
+        assertEquals(ValueType.COLLECTION, classify(java.util.ArrayList.class));
+        assertEquals(ValueType.MAP, classify(java.util.HashMap.class));
+        assertEquals(ValueType.OTHER, classify(Object.class));
+    }
 }